@@ -0,0 +1,73 @@
+package com.voxels;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.voxels.Block.BlockType;
+
+// Chunk.getBlock, Chunk.setBlock and Block.isVisible over every Block of a Chunk
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkAccessBenchmark {
+	// What each BlockType is swapped for, by ordinal: Air and Dirt, Grass and Sand
+	private static final BlockType[] SWAPPED = { BlockType.Dirt, BlockType.Air, BlockType.Sand, BlockType.Grass };
+	
+	@Param
+	public ChunkFixture fixture;
+	
+	private Chunk chunk = null;
+	
+	@Setup
+	public void setup() {
+		chunk = fixture.create();
+	}
+	
+	@Benchmark
+	public void getBlock(Blackhole blackhole) {
+		for (int x = 0; x < Chunk.CHUNK_SIZE; ++x) {
+			for (int y = 0; y < Chunk.CHUNK_SIZE; ++y) {
+				for (int z = 0; z < Chunk.CHUNK_SIZE; ++z) {
+					blackhole.consume(chunk.getBlock(x, y, z));
+				}
+			}
+		}
+	}
+	
+	@Benchmark
+	public void setBlock() {
+		// Swap every Block, so each write changes the Chunk (uniform sections split and merge
+		// again) and the fixture comes back every second invocation
+		for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+			chunk.setBlock(index, SWAPPED[chunk.getBlock(index).ordinal()]);
+		}
+	}
+	
+	@Benchmark
+	public int isVisible() {
+		int visible = 0;
+		
+		for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+			if (Block.isVisible(chunk, index)) {
+				++visible;
+			}
+		}
+		
+		return visible;
+	}
+}
@@ -0,0 +1,43 @@
+package com.voxels;
+
+import java.util.Random;
+
+import com.voxels.Block.BlockType;
+
+// The Chunk contents the benchmarks run against
+public enum ChunkFixture {
+	Full,
+	Empty,
+	Checkerboard,
+	Noisy;
+	
+	private static final BlockType[] BLOCK_TYPES = BlockType.values();
+	
+	Chunk create() {
+		Chunk chunk = new Chunk(0, 0, 0);
+		Random random = new Random(42);
+		
+		for (int x = 0; x < Chunk.CHUNK_SIZE; ++x) {
+			for (int y = 0; y < Chunk.CHUNK_SIZE; ++y) {
+				for (int z = 0; z < Chunk.CHUNK_SIZE; ++z) {
+					switch (this) {
+					case Full:
+						chunk.setBlock(x, y, z, BlockType.Dirt);
+						break;
+					case Empty:
+						break;
+					case Checkerboard:
+						// Every solid Block is surrounded by Air (the most faces possible)
+						chunk.setBlock(x, y, z, ((x + y + z) & 1) == 0 ? BlockType.Dirt : BlockType.Air);
+						break;
+					case Noisy:
+						chunk.setBlock(x, y, z, BLOCK_TYPES[random.nextInt(BLOCK_TYPES.length)]);
+						break;
+					}
+				}
+			}
+		}
+		
+		return chunk;
+	}
+}
@@ -0,0 +1,51 @@
+package com.voxels;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.voxels.graphics.ChunkMesh;
+import com.voxels.graphics.ChunkMesher;
+
+// Building the merged mesh of a single Chunk
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshBenchmark {
+	@Param
+	public ChunkFixture fixture;
+	
+	private Chunk chunk = null;
+	private ChunkMesher mesher = null;
+	private ChunkMesh mesh = null;
+	
+	@Setup
+	public void setup() {
+		chunk = fixture.create();
+		mesher = new ChunkMesher();
+		mesh = new ChunkMesh();
+		
+		// Grow the mesh once, so the benchmark doesn't measure the first allocation
+		mesher.build(chunk, mesh);
+	}
+	
+	@Benchmark
+	public int build() {
+		mesher.build(chunk, mesh);
+		
+		return mesh.getQuadCount();
+	}
+}
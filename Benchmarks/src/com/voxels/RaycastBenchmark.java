@@ -0,0 +1,108 @@
+package com.voxels;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.voxels.Block.BlockType;
+import com.voxels.graphics.NullMeshUploader;
+import com.voxels.math.Vec3f;
+import com.voxels.terrain.NoiseTerrainGenerator;
+
+// The Player's block picking, against generated terrain
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RaycastBenchmark {
+	private static final int RAY_COUNT = 256;
+	private static final float REACH = 20;
+	private static final float STEP = 0.5f;
+	
+	private World world = null;
+	private Player player = null;
+	private Vec3f[] directions = null;
+	private Vec3f point = new Vec3f();
+	private VoxelRaycaster raycaster = null;
+	private RaycastHit hit = new RaycastHit();
+	private int next = 0;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		// Build the World without a GL context
+		Chunk.UPLOADER = new NullMeshUploader();
+		NoiseTerrainGenerator generator = new NoiseTerrainGenerator(1);
+		world = new World(generator, null, 4, 1, 0, new ChunkWorkers(2, 64), Integer.MAX_VALUE);
+		
+		// Stand on the ground at the origin
+		player = new Player();
+		player.setPosition(new Vec3f(0, (generator.getSurfaceHeight(0, 0) + 1) * Block.DEFAULT_SIZE + player.getHeight(), 0));
+		
+		while (!world.isFullyLoaded()) {
+			world.update(player.getPosition());
+		}
+		
+		raycaster = new VoxelRaycaster(world);
+		
+		// Look in random directions, mostly downwards so some rays hit
+		Random random = new Random(7);
+		directions = new Vec3f[RAY_COUNT];
+		for (int ray = 0; ray < RAY_COUNT; ++ray) {
+			directions[ray] = new Vec3f(random.nextFloat() * 2 - 1, -random.nextFloat(), random.nextFloat() * 2 - 1);
+			directions[ray].normalize();
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		world.delete();
+	}
+	
+	// The sampling loop Voxels.render used before the VoxelRaycaster
+	@Benchmark
+	public BlockType sampledPick() {
+		Vec3f direction = directions[next++ & (RAY_COUNT - 1)];
+		float distance = 0;
+		
+		while (distance < REACH) {
+			point.set(player.getPosition());
+			point.addScaled(direction, distance);
+			
+			BlockType b = world.getBlock(point);
+			
+			if (b != null && b != BlockType.Air) {
+				return b;
+			}
+			
+			distance += STEP;
+		}
+		
+		return null;
+	}
+	
+	// Grid traversal over the same rays
+	@Benchmark
+	public BlockType traversalPick() {
+		Vec3f direction = directions[next++ & (RAY_COUNT - 1)];
+		
+		if (raycaster.cast(player.getPosition(), direction, REACH, hit)) {
+			return hit.getType();
+		}
+		
+		return null;
+	}
+}
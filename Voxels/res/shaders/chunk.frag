@@ -0,0 +1,16 @@
+#version 130
+
+uniform sampler2D blocks;
+
+in vec2 tileLocal;
+flat in vec3 tileRegion;
+in float shade;
+
+void main() {
+	// Wrap the coordinates inside the atlas tile (xy is the corner, z the size)
+	vec2 uv = tileRegion.xy + fract(tileLocal) * tileRegion.z;
+
+	// Use the unwrapped derivatives so the tile seams don't select the smallest mipmap
+	vec4 colour = textureGrad(blocks, uv, dFdx(tileLocal) * tileRegion.z, dFdy(tileLocal) * tileRegion.z);
+	gl_FragColor = vec4(colour.rgb * shade, colour.a);
+}
@@ -0,0 +1,25 @@
+#version 130
+
+in vec3 position;
+in vec2 local;
+in vec3 tile;
+in vec4 light;
+
+out vec2 tileLocal;
+flat out vec3 tileRegion;
+out float shade;
+
+void main() {
+	// Pass the tile through so the fragment shader can repeat it across merged faces
+	tileLocal = local;
+	tileRegion = tile;
+
+	// Each level of light is a fifth dimmer than the one above (x is sky light, y block light)
+	float level = max(light.x, light.y) * 15.0;
+	shade = pow(0.8, 15.0 - level);
+
+	// Corners closed in by the Blocks around them get as little as half the light (z is 0 to 1 as it gets more)
+	shade *= 0.5 + 0.5 * light.z;
+
+	gl_Position = gl_ModelViewProjectionMatrix * vec4(position, 1.0);
+}
@@ -0,0 +1,13 @@
+#version 130
+
+uniform sampler2DArray blocks;
+
+in vec2 tileLocal;
+flat in vec3 tileRegion;
+in float shade;
+
+void main() {
+	// Every tile is its own repeating layer (x is the layer), so merged faces wrap without seams
+	vec4 colour = texture(blocks, vec3(tileLocal, tileRegion.x));
+	gl_FragColor = vec4(colour.rgb * shade, colour.a);
+}
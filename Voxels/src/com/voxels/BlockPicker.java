@@ -0,0 +1,63 @@
+package com.voxels;
+
+import com.voxels.Block.BlockType;
+import com.voxels.math.Mat4f;
+import com.voxels.math.Vec3f;
+
+// Breaks and places the Block the Player is looking at. Render thread only; the Simulation
+// reads a BlockSnapshot instead.
+class BlockPicker {
+	private World world = null;
+	private VoxelRaycaster raycaster = null;
+	private BoxCollider collider = null;
+	private float reach = 0;
+	
+	// Scratch space, so picking doesn't allocate
+	private Mat4f look = new Mat4f();
+	private Vec3f direction = new Vec3f();
+	private RaycastHit hit = new RaycastHit();
+	
+	BlockPicker(World world, float reach) {
+		this.world = world;
+		this.reach = reach;
+		raycaster = new VoxelRaycaster(world);
+		collider = new BoxCollider(world);
+	}
+	
+	// Turn the looked at Block to Air; returns whether there was one in reach
+	boolean breakBlock(Player player, Vec3f eye) {
+		if (!cast(player, eye)) {
+			return false;
+		}
+		
+		world.setBlock(hit.getX(), hit.getY(), hit.getZ(), BlockType.Air);
+		
+		return true;
+	}
+	
+	// Place a Block against the looked at face, unless it would be inside the Player; returns whether it was placed
+	boolean placeBlock(Player player, Vec3f eye, BlockType type) {
+		if (!cast(player, eye) || collider.intersects(player, eye, hit.getAdjacentX(), hit.getAdjacentY(), hit.getAdjacentZ())) {
+			return false;
+		}
+		
+		world.setBlock(hit.getAdjacentX(), hit.getAdjacentY(), hit.getAdjacentZ(), type);
+		
+		return true;
+	}
+	
+	private boolean cast(Player player, Vec3f eye) {
+		// Build the same rotation the view uses; it is only rotated, so its transpose takes
+		// view directions back to world directions
+		look.identity();
+		look.rotate(player.getRotation().x, 1, 0, 0);
+		look.rotate(player.getRotation().y, 0, 1, 0);
+		look.transpose();
+		
+		direction.set(0, 0, 1);
+		direction.mulMat4(look);
+		direction.y = -direction.y;
+		
+		return raycaster.cast(eye, direction, reach, hit);
+	}
+}
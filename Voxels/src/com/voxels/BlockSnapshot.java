@@ -0,0 +1,106 @@
+package com.voxels;
+
+import java.util.Arrays;
+
+import com.voxels.Block.BlockType;
+import com.voxels.math.Vec3f;
+
+// Which Blocks are solid in a cube around a point, copied out of the World so another thread can read
+// them while the World changes. Blocks outside the cube count as solid, so nothing moves through Blocks
+// it hasn't been shown; Chunks that weren't loaded don't block movement, as in the World.
+class BlockSnapshot implements SolidBlocks {
+	// Blocks from the centre to each face of the cube, far more than the Player moves between frames
+	static final int RADIUS = 16;
+	private static final int SIZE = RADIUS * 2;
+	private static final int SHIFT = Integer.numberOfTrailingZeros(Chunk.CHUNK_SIZE);
+	private static final int MASK = Chunk.CHUNK_SIZE - 1;
+	
+	// Bit per Block of the cube, at x + y * 32 + z * 1024 from its lowest corner
+	private long[] solid = new long[SIZE * SIZE * SIZE / Long.SIZE];
+	// World Block coordinates of the lowest corner
+	private int originX = 0;
+	private int originY = 0;
+	private int originZ = 0;
+	
+	// Copy the Blocks around position (in Player space) from the World, on the thread that changes it
+	void fill(World world, Vec3f position) {
+		originX = World.blockX(position.x) - RADIUS;
+		originY = World.blockY(position.y) - RADIUS;
+		originZ = World.blockZ(position.z) - RADIUS;
+		Arrays.fill(solid, 0);
+		
+		// Copy the part of each Chunk inside the cube
+		for (int chunkZ = originZ >> SHIFT; chunkZ <= (originZ + SIZE - 1) >> SHIFT; ++chunkZ) {
+			for (int chunkY = originY >> SHIFT; chunkY <= (originY + SIZE - 1) >> SHIFT; ++chunkY) {
+				for (int chunkX = originX >> SHIFT; chunkX <= (originX + SIZE - 1) >> SHIFT; ++chunkX) {
+					Chunk chunk = world.getChunk(chunkX, chunkY, chunkZ);
+					
+					if (chunk != null) {
+						fill(chunk);
+					}
+				}
+			}
+		}
+	}
+	
+	private void fill(Chunk chunk) {
+		int lowX = Math.max(originX, chunk.getX() << SHIFT);
+		int lowY = Math.max(originY, chunk.getY() << SHIFT);
+		int lowZ = Math.max(originZ, chunk.getZ() << SHIFT);
+		int highX = Math.min(originX + SIZE, (chunk.getX() + 1) << SHIFT);
+		int highY = Math.min(originY + SIZE, (chunk.getY() + 1) << SHIFT);
+		int highZ = Math.min(originZ + SIZE, (chunk.getZ() + 1) << SHIFT);
+		
+		// Bits of a row along x covered by the Chunk (a row of 32 never crosses a long)
+		long rowMask = (1L << (highX - lowX)) - 1;
+		
+		for (int y = lowY; y < highY; ++y) {
+			int section = (y & MASK) / Chunk.SECTION_HEIGHT;
+			
+			// Skip the Air of the sky without reading its Blocks
+			if (chunk.isSectionEmpty(section)) {
+				continue;
+			}
+			
+			// Fill whole rows of solid ground at once
+			boolean uniform = chunk.isSectionUniform(section);
+			
+			for (int z = lowZ; z < highZ; ++z) {
+				int row = (lowX - originX) + (y - originY) * SIZE + (z - originZ) * SIZE * SIZE;
+				
+				if (uniform) {
+					solid[row >>> 6] |= rowMask << row;
+					continue;
+				}
+				
+				for (int x = lowX; x < highX; ++x) {
+					if (chunk.getBlock(Chunk.index(x & MASK, y & MASK, z & MASK)) != BlockType.Air) {
+						int bit = row + x - lowX;
+						solid[bit >>> 6] |= 1L << bit;
+					}
+				}
+			}
+		}
+	}
+	
+	void set(BlockSnapshot other) {
+		System.arraycopy(other.solid, 0, solid, 0, solid.length);
+		originX = other.originX;
+		originY = other.originY;
+		originZ = other.originZ;
+	}
+	
+	@Override
+	public boolean isSolid(int x, int y, int z) {
+		int dx = x - originX;
+		int dy = y - originY;
+		int dz = z - originZ;
+		
+		if (dx < 0 || dx >= SIZE || dy < 0 || dy >= SIZE || dz < 0 || dz >= SIZE) {
+			return true;
+		}
+		
+		int bit = dx + dy * SIZE + dz * SIZE * SIZE;
+		return (solid[bit >>> 6] & 1L << bit) != 0;
+	}
+}
@@ -0,0 +1,123 @@
+package com.voxels;
+
+import com.voxels.math.Vec3f;
+
+// Moves the Player's bounding box through the World one axis at a time, so it slides along walls
+// instead of stopping dead. Only the Blocks the box sweeps over are looked up, in world Block units.
+public class BoxCollider {
+	// Gap kept between the box and the Blocks it rests against, in Blocks
+	private static final float SKIN = 0.001f;
+	
+	private SolidBlocks blocks = null;
+	// Bounds of the box being moved, in world Block coordinates
+	private float[] min = new float[3];
+	private float[] max = new float[3];
+	private int[] cell = new int[3];
+	// Whether the last sweep was cut short by a Block
+	private boolean blocked = false;
+	
+	public BoxCollider(SolidBlocks blocks) {
+		this.blocks = blocks;
+	}
+	
+	// Move the Player by displacement (in Player space) as far as the Blocks allow, and update
+	// whether it is standing on the ground or pressed against a ceiling
+	public void move(Player player, Vec3f displacement) {
+		setBounds(player, player.getPosition());
+		
+		// Move vertically first, so walking off a ledge and onto a step both work as expected
+		float moveY = sweep(1, displacement.y / Block.DEFAULT_SIZE);
+		boolean hitY = blocked;
+		
+		// Player space is mirrored on x and z
+		float moveX = sweep(0, -displacement.x / Block.DEFAULT_SIZE);
+		float moveZ = sweep(2, -displacement.z / Block.DEFAULT_SIZE);
+		
+		player.setContacts(hitY && displacement.y < 0, hitY && displacement.y > 0);
+		
+		Vec3f position = player.getPosition();
+		position.x -= moveX * Block.DEFAULT_SIZE;
+		position.y += moveY * Block.DEFAULT_SIZE;
+		position.z -= moveZ * Block.DEFAULT_SIZE;
+	}
+	
+	// Whether the Player's box, with its eye at position, overlaps the Block at world Block coordinates
+	public boolean intersects(Player player, Vec3f position, int x, int y, int z) {
+		setBounds(player, position);
+		
+		return x + 1 > min[0] + SKIN && x < max[0] - SKIN
+				&& y + 1 > min[1] + SKIN && y < max[1] - SKIN
+				&& z + 1 > min[2] + SKIN && z < max[2] - SKIN;
+	}
+	
+	private void setBounds(Player player, Vec3f position) {
+		float halfWidth = player.getWidth() / 2 / Block.DEFAULT_SIZE;
+		
+		// The Player's position is at eye level, on top of the box
+		float x = -position.x / Block.DEFAULT_SIZE;
+		float y = position.y / Block.DEFAULT_SIZE;
+		float z = -position.z / Block.DEFAULT_SIZE;
+		
+		min[0] = x - halfWidth;
+		max[0] = x + halfWidth;
+		min[1] = y - player.getHeight() / Block.DEFAULT_SIZE;
+		max[1] = y;
+		min[2] = z - halfWidth;
+		max[2] = z + halfWidth;
+	}
+	
+	// Move the box along one axis, stopping at the first solid layer of Blocks in the way
+	private float sweep(int axis, float amount) {
+		blocked = false;
+		
+		if (amount > 0) {
+			// Check each layer the leading face enters
+			for (int layer = (int)Math.ceil(max[axis] - SKIN); layer < max[axis] + amount; ++layer) {
+				if (isLayerSolid(axis, layer)) {
+					amount = layer - SKIN - max[axis];
+					blocked = true;
+					break;
+				}
+			}
+		} else if (amount < 0) {
+			for (int layer = (int)Math.floor(min[axis] + SKIN) - 1; layer + 1 > min[axis] + amount; --layer) {
+				if (isLayerSolid(axis, layer)) {
+					amount = layer + 1 + SKIN - min[axis];
+					blocked = true;
+					break;
+				}
+			}
+		}
+		
+		min[axis] += amount;
+		max[axis] += amount;
+		
+		return amount;
+	}
+	
+	// Whether any Block the box covers in the given layer across axis is solid
+	private boolean isLayerSolid(int axis, int layer) {
+		int uAxis = (axis + 1) % 3;
+		int vAxis = (axis + 2) % 3;
+		int lowU = (int)Math.floor(min[uAxis] + SKIN);
+		int highU = (int)Math.ceil(max[uAxis] - SKIN);
+		int lowV = (int)Math.floor(min[vAxis] + SKIN);
+		int highV = (int)Math.ceil(max[vAxis] - SKIN);
+		
+		cell[axis] = layer;
+		
+		for (int u = lowU; u < highU; ++u) {
+			cell[uAxis] = u;
+			
+			for (int v = lowV; v < highV; ++v) {
+				cell[vAxis] = v;
+				
+				if (blocks.isSolid(cell[0], cell[1], cell[2])) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+}
@@ -1,168 +1,890 @@
 package com.voxels;
 
-import static org.lwjgl.opengl.GL11.GL_COMPILE;
-import static org.lwjgl.opengl.GL11.glCallList;
-import static org.lwjgl.opengl.GL11.glDeleteLists;
-import static org.lwjgl.opengl.GL11.glEndList;
-import static org.lwjgl.opengl.GL11.glGenLists;
-import static org.lwjgl.opengl.GL11.glNewList;
-import static org.lwjgl.opengl.GL11.glPopMatrix;
-import static org.lwjgl.opengl.GL11.glPushMatrix;
-import static org.lwjgl.opengl.GL11.glTranslatef;
+import java.util.Arrays;
 
-import com.voxels.math.Vec3f;
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+import com.voxels.graphics.ChunkMesh;
+import com.voxels.graphics.ChunkMesher;
+import com.voxels.graphics.MeshBuffer;
+import com.voxels.graphics.MeshSource;
+import com.voxels.graphics.MeshUploader;
 
-public class Chunk {
-	static final int CHUNK_SIZE = 16;
+public class Chunk implements MeshSource {
+	public static final int CHUNK_SIZE = 16;
+	public static final int CHUNK_VOLUME = CHUNK_SIZE * CHUNK_SIZE * CHUNK_SIZE;
+	// Blocks on each face of the Chunk
+	static final int FACE_AREA = CHUNK_SIZE * CHUNK_SIZE;
+	// The Chunk is meshed in horizontal sections, so an edit only rebuilds the section(s) it touches
+	public static final int SECTION_HEIGHT = 4;
+	public static final int SECTION_COUNT = CHUNK_SIZE / SECTION_HEIGHT;
+	static final int ALL_SECTIONS = (1 << SECTION_COUNT) - 1;
+	// Blocks in each section, and in each of its rows along z
+	static final int SECTION_VOLUME = CHUNK_VOLUME / SECTION_COUNT;
+	private static final int SECTION_ROW = CHUNK_SIZE * SECTION_HEIGHT;
 	
-	private Block[][][] blocks = null;
-	private int displayList = 0;
-	private Vec3f position = null;
+	// Codes of the 26 neighbouring Chunks (and this one), from their offset on each axis
+	static final int NEIGHBOUR_CODES = 27;
 	
-	Chunk(Vec3f location) {
-		blocks = new Block[CHUNK_SIZE][CHUNK_SIZE][CHUNK_SIZE];
-		position = location;
+	// Strides of each axis in the flat block array (x + y * 16 + z * 256)
+	static final int X_STRIDE = 1;
+	static final int Y_STRIDE = CHUNK_SIZE;
+	static final int Z_STRIDE = CHUNK_SIZE * CHUNK_SIZE;
+	
+	private static final BlockType[] BLOCK_TYPES = BlockType.values();
+	private static final Side[] SIDES = Side.values();
+	// Chunks are meshed on the render thread, so they can share a single mesher
+	private static final ChunkMesher MESHER = new ChunkMesher();
+	// Coarser copies are made on whichever thread meshes the Chunk
+	private static final ThreadLocal<DownsampledChunk> DOWNSAMPLED = ThreadLocal.withInitial(DownsampledChunk::new);
+	
+	public static int CHUNK_SHADER = 0;
+	public static MeshUploader UPLOADER = null;
+	
+	// Palette indices of the Blocks in each section (x + y * 16 + z * 64 within it), or null while
+	// every Block in the section is the same, so sky and solid ground store no Blocks at all
+	private short[][] sectionBlocks = null;
+	// Palette index of every Block in each section without its own array
+	private short[] uniformBlocks = null;
+	// How many Blocks of each section with its own array use each palette index, to notice it becoming uniform
+	private int[][] sectionCounts = null;
+	// Sky light (high nibble) and block light (low nibble) of each Block, laid out like the Blocks,
+	// or null while the whole section is lit the same
+	private byte[][] sectionLight = null;
+	// Light of every Block in each section without its own array
+	private byte[] uniformLight = null;
+	// The BlockTypes used by this Chunk, indexed by palette index
+	private BlockType[] palette = null;
+	private int paletteSize = 0;
+	// Palette index of each BlockType (by ordinal), or -1 if not in the palette
+	private short[] paletteLookup = null;
+	// Ordinals of the neighbouring Chunks' Blocks touching each side, or -1 where the neighbour wasn't
+	// loaded. Copied on the render thread before meshing, so meshing on another thread never reads
+	// another Chunk.
+	private byte[] borders = null;
+	// Light of the neighbouring Chunks' Blocks touching each side, copied along with the borders
+	private byte[] borderLight = null;
+	// Ordinals of the Blocks last seen across each side, kept while the neighbour isn't loaded,
+	// or -1 where never seen, for shading corners
+	private byte[] seenBorders = null;
+	// The same for the Blocks along each edge and at each corner of the Chunk in the Chunks diagonally next
+	// to it, indexed by neighbourCode, then along the edge
+	private byte[] edges = null;
+	// The whole mesh that is uploaded, and the mesh of each section it is put together from
+	private ChunkMesh mesh = null;
+	private ChunkMesh[] sectionMeshes = null;
+	private MeshBuffer buffer = null;
+	// Bit per section whose mesh no longer matches the Blocks
+	private int dirtySections = ALL_SECTIONS;
+	// Level of detail the Chunk is meshed at: 0 for every Block, and half the resolution for each level above
+	private int lod = 0;
+	// Bit per side (by ordinal) whose neighbour is meshed at another level of detail, where a coarser copy
+	// closes the seam between them (always none at full detail)
+	private int seams = 0;
+	// Whether the Blocks differ from the saved copy, or from the generated terrain if never saved
+	private boolean modified = false;
+	// The loaded Chunk this is a copy of, while the copy is meshed on a worker, or null
+	private Chunk original = null;
+	private int chunkX = 0;
+	private int chunkY = 0;
+	private int chunkZ = 0;
+	
+	Chunk(int chunkX, int chunkY, int chunkZ) {
+		sectionBlocks = new short[SECTION_COUNT][];
+		uniformBlocks = new short[SECTION_COUNT];
+		sectionCounts = new int[SECTION_COUNT][];
+		sectionLight = new byte[SECTION_COUNT][];
+		uniformLight = new byte[SECTION_COUNT];
+		palette = new BlockType[4];
+		paletteLookup = new short[BLOCK_TYPES.length];
+		borders = new byte[SIDES.length * FACE_AREA];
+		borderLight = new byte[SIDES.length * FACE_AREA];
+		seenBorders = new byte[SIDES.length * FACE_AREA];
+		edges = new byte[NEIGHBOUR_CODES * CHUNK_SIZE];
+		mesh = new ChunkMesh();
+		sectionMeshes = new ChunkMesh[SECTION_COUNT];
+		for (int section = 0; section < SECTION_COUNT; ++section) {
+			sectionMeshes[section] = new ChunkMesh();
+		}
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.chunkZ = chunkZ;
+		
+		// Every Block starts as Air, which is always palette index 0
+		Arrays.fill(paletteLookup, (short)-1);
+		addToPalette(BlockType.Air);
+		
+		// No neighbours are known yet
+		Arrays.fill(borders, (byte)-1);
+		Arrays.fill(seenBorders, (byte)-1);
+		Arrays.fill(edges, (byte)-1);
 	}
 	
-	Block getBlock(Vec3f location) {
-	    // Get the difference locations
-		float deltaX = position.x - location.x;
-		float deltaY = location.y - position.y;
-		float deltaZ = position.z - location.z;
-
-        deltaX = (int) ((deltaX + (Math.signum(deltaX) > 0 ? 0 : -1) * Block.DEFAULT_SIZE) / Block.DEFAULT_SIZE);
-        deltaY = (int) ((deltaY + (Math.signum(deltaY) > 0 ? 0 : -1) * Block.DEFAULT_SIZE) / Block.DEFAULT_SIZE);
-        deltaZ = (int) ((deltaZ + (Math.signum(deltaZ) > 0 ? 0 : -1) * Block.DEFAULT_SIZE) / Block.DEFAULT_SIZE);
-
-        Vec3f index = new Vec3f(deltaX, deltaY, deltaZ);
-
-        if (index.x >= 0 && index.x < CHUNK_SIZE && index.y >= 0 && index.y < CHUNK_SIZE && index.z >= 0 && index.z < CHUNK_SIZE) {
-            return blocks[(int) index.x][(int) index.y][(int) index.z];
-        } else {
-            return null;
-        }
+	// Copy what meshing reads from a loaded Chunk, so a worker can mesh it while the Chunk stays in use.
+	// The copy takes the Chunk's meshes and dirty sections along, and is only ever read.
+	private Chunk(Chunk chunk) {
+		sectionBlocks = new short[SECTION_COUNT][];
+		sectionCounts = new int[SECTION_COUNT][];
+		sectionLight = new byte[SECTION_COUNT][];
+		for (int section = 0; section < SECTION_COUNT; ++section) {
+			sectionBlocks[section] = chunk.sectionBlocks[section] == null ? null : chunk.sectionBlocks[section].clone();
+			sectionCounts[section] = chunk.sectionCounts[section] == null ? null : chunk.sectionCounts[section].clone();
+			sectionLight[section] = chunk.sectionLight[section] == null ? null : chunk.sectionLight[section].clone();
+		}
+		uniformBlocks = chunk.uniformBlocks.clone();
+		uniformLight = chunk.uniformLight.clone();
+		palette = chunk.palette.clone();
+		paletteSize = chunk.paletteSize;
+		paletteLookup = chunk.paletteLookup.clone();
+		borders = chunk.borders.clone();
+		borderLight = chunk.borderLight.clone();
+		seenBorders = chunk.seenBorders.clone();
+		edges = chunk.edges.clone();
+		mesh = chunk.mesh;
+		sectionMeshes = chunk.sectionMeshes;
+		dirtySections = chunk.dirtySections;
+		lod = chunk.lod;
+		seams = chunk.seams;
+		chunkX = chunk.chunkX;
+		chunkY = chunk.chunkY;
+		chunkZ = chunk.chunkZ;
+		original = chunk;
 	}
-
-	public Block[][][] getBlocks() {
-		return blocks;
+	
+	public static int index(int x, int y, int z) {
+		return x * X_STRIDE + y * Y_STRIDE + z * Z_STRIDE;
+	}
+	
+	public static int indexX(int index) {
+		return index & (CHUNK_SIZE - 1);
+	}
+	
+	public static int indexY(int index) {
+		return (index / Y_STRIDE) & (CHUNK_SIZE - 1);
+	}
+	
+	public static int indexZ(int index) {
+		return index / Z_STRIDE;
+	}
+	
+	public static boolean contains(int x, int y, int z) {
+		return x >= 0 && x < CHUNK_SIZE && y >= 0 && y < CHUNK_SIZE && z >= 0 && z < CHUNK_SIZE;
+	}
+	
+	// Get the index of the Block next to index on the given side, or -1 if it is outside the Chunk
+	public static int neighbourIndex(int index, Side side) {
+		int x = indexX(index) + side.dx;
+		int y = indexY(index) + side.dy;
+		int z = indexZ(index) + side.dz;
+		
+		if (!contains(x, y, z)) {
+			return -1;
+		}
+		
+		return index + side.dx * X_STRIDE + side.dy * Y_STRIDE + side.dz * Z_STRIDE;
+	}
+	
+	// Get the index of the Block at position (u, v) on a face of the Chunk, layer Blocks in along the side's axis
+	static int layerIndex(Side side, int faceIndex, int layer) {
+		int u = faceIndex & (CHUNK_SIZE - 1);
+		int v = faceIndex / CHUNK_SIZE;
+		
+		if (side.dx != 0) {
+			return index(layer, u, v);
+		}
+		
+		if (side.dy != 0) {
+			return index(v, layer, u);
+		}
+		
+		return index(u, v, layer);
+	}
+	
+	// Get the position on the face of the Chunk that the Block at index lies over (the inverse of layerIndex)
+	private static int faceIndex(int index, Side side) {
+		if (side.dx != 0) {
+			return indexY(index) + indexZ(index) * CHUNK_SIZE;
+		}
+		
+		if (side.dy != 0) {
+			return indexZ(index) + indexX(index) * CHUNK_SIZE;
+		}
+		
+		return indexX(index) + indexY(index) * CHUNK_SIZE;
+	}
+	
+	// Get the code of the neighbouring Chunk at an offset of -1, 0 or 1 on each axis
+	static int neighbourCode(int dx, int dy, int dz) {
+		return (dx + 1) + (dy + 1) * 3 + (dz + 1) * 9;
+	}
+	
+	// Whether the offset leads to a Chunk touching this one along an edge or at a corner, rather than a side
+	static boolean isEdge(int dx, int dy, int dz) {
+		return (dx != 0 ? 1 : 0) + (dy != 0 ? 1 : 0) + (dz != 0 ? 1 : 0) >= 2;
+	}
+	
+	// Get the offset (-1, 0 or 1) of the Chunk holding a coordinate up to one Block outside this one
+	private static int offsetOf(int coordinate) {
+		return coordinate < 0 ? -1 : (coordinate >= CHUNK_SIZE ? 1 : 0);
+	}
+	
+	// Get the section holding the Block at index
+	static int sectionOf(int index) {
+		return indexY(index) / SECTION_HEIGHT;
+	}
+	
+	// Get where the Block at index is in its section's array
+	static int cellIndex(int index) {
+		return (index & (SECTION_ROW - 1)) + indexZ(index) * SECTION_ROW;
+	}
+	
+	public BlockType getBlock(int index) {
+		int section = sectionOf(index);
+		short[] cells = sectionBlocks[section];
+		
+		return palette[cells == null ? uniformBlocks[section] : cells[cellIndex(index)]];
+	}
+	
+	@Override
+	public BlockType getBlock(int x, int y, int z) {
+		return getBlock(index(x, y, z));
+	}
+	
+	@Override
+	public int getSize() {
+		return CHUNK_SIZE;
+	}
+	
+	@Override
+	public boolean isFaceVisible(int x, int y, int z, Side side) {
+		return Block.isFaceVisible(this, index(x, y, z), side);
+	}
+	
+	// Whether every Block in the section is the same, and stored without an array
+	boolean isSectionUniform(int section) {
+		return sectionBlocks[section] == null;
 	}
 	
-	Vec3f getPosition() {
-		return position;
+	// Get the BlockType filling a uniform section
+	BlockType getUniformBlock(int section) {
+		return palette[uniformBlocks[section]];
 	}
 	
-	void render() {
-		// Render the current Chunk by calling the display list
-		glCallList(displayList);
+	// Whether the section is all Air, so it has no faces to mesh or Blocks to hit
+	boolean isSectionEmpty(int section) {
+		return sectionBlocks[section] == null && palette[uniformBlocks[section]] == BlockType.Air;
 	}
 	
-	void setBlock(int x, int y, int z, Block block) {
-		// Set the block at location to the given block
-		blocks[x][y][z] = block;
+	// Whether the sections the coarser copy's cell around the Block at index covers are all Air
+	private boolean isCellEmpty(int index) {
+		int scale = 1 << lod;
+		int bottom = indexY(index) / scale * scale;
 		
-		// If the block is not on the boundaries,
-		// set the adjacent blocks and corresponding
-		// adjacent blocks' adjacent block
-		if (x > 0) {
-			if (block != null) {
-				block.setLeftBlock(blocks[x - 1][y][z]);
+		for (int y = bottom; y < bottom + scale; y += SECTION_HEIGHT) {
+			if (!isSectionEmpty(y / SECTION_HEIGHT)) {
+				return false;
 			}
-			
-			if (blocks[x - 1][y][z] != null) {
-				blocks[x - 1][y][z].setRightBlock(block);
+		}
+		
+		return true;
+	}
+	
+	// Whether every Block in the Chunk is Air
+	private boolean isEmpty() {
+		for (int section = 0; section < SECTION_COUNT; ++section) {
+			if (!isSectionEmpty(section)) {
+				return false;
 			}
 		}
 		
-		if (x < CHUNK_SIZE - 1) {
-			if (block != null) {
-				block.setRightBlock(blocks[x + 1][y][z]);
+		return true;
+	}
+	
+	// Get the local y of the highest solid Block at x, z no higher than maxY, or -1 if there is none.
+	// Steps over empty sections without reading their Blocks.
+	int getHighestBlock(int x, int z, int maxY) {
+		int y = maxY;
+		
+		while (y >= 0) {
+			int section = y / SECTION_HEIGHT;
+			
+			if (isSectionEmpty(section)) {
+				y = section * SECTION_HEIGHT - 1;
+				continue;
 			}
 			
-			if (blocks[x + 1][y][z] != null) {
-				blocks[x + 1][y][z].setLeftBlock(block);
+			if (getBlock(index(x, y, z)) != BlockType.Air) {
+				return y;
 			}
+			
+			--y;
+		}
+		
+		return -1;
+	}
+	
+	// Get the packed sky and block light of the Block at index
+	public int getLight(int index) {
+		int section = sectionOf(index);
+		byte[] cells = sectionLight[section];
+		
+		return (cells == null ? uniformLight[section] : cells[cellIndex(index)]) & 0xFF;
+	}
+	
+	// Get the packed light of every Block in the section, or -1 if it differs between them
+	int getUniformLight(int section) {
+		return sectionLight[section] == null ? uniformLight[section] & 0xFF : -1;
+	}
+	
+	// Set the packed light of the Block at index, returning whether it changed
+	boolean setLight(int index, int light) {
+		int section = sectionOf(index);
+		byte[] cells = sectionLight[section];
+		
+		if (cells == null) {
+			if (uniformLight[section] == (byte)light) {
+				return false;
+			}
+			
+			// Give the section an array of its light, so it can differ
+			cells = new byte[SECTION_VOLUME];
+			Arrays.fill(cells, uniformLight[section]);
+			sectionLight[section] = cells;
+		}
+		
+		int cell = cellIndex(index);
+		
+		if (cells[cell] == (byte)light) {
+			return false;
 		}
 		
-		if (y > 0) {
-			if (block != null) {
-				block.setBottomBlock(blocks[x][y - 1][z]);
+		cells[cell] = (byte)light;
+		
+		return true;
+	}
+	
+	// Replace the light of a whole section (laid out like its array of Blocks), returning whether any of it changed
+	boolean setSectionLight(int section, byte[] light) {
+		boolean uniform = true;
+		for (int cell = 1; cell < SECTION_VOLUME && uniform; ++cell) {
+			uniform = light[cell] == light[0];
+		}
+		
+		byte[] cells = sectionLight[section];
+		boolean changed = cells == null ? !uniform || uniformLight[section] != light[0] : !Arrays.equals(cells, light);
+		
+		// Keep an array only while the light differs within the section
+		if (uniform) {
+			sectionLight[section] = null;
+			uniformLight[section] = light[0];
+		} else if (cells == null) {
+			sectionLight[section] = light.clone();
+		} else {
+			System.arraycopy(light, 0, cells, 0, SECTION_VOLUME);
+		}
+		
+		return changed;
+	}
+	
+	// Give every Block in a section the same packed light, returning whether any of it changed
+	boolean fillSectionLight(int section, int light) {
+		boolean changed = sectionLight[section] != null || uniformLight[section] != (byte)light;
+		
+		sectionLight[section] = null;
+		uniformLight[section] = (byte)light;
+		
+		return changed;
+	}
+	
+	// Get roughly how many bytes the Blocks and light of the Chunk take up
+	public int getStorageBytes() {
+		int bytes = SECTION_COUNT * (Short.BYTES + 1) + paletteLookup.length * Short.BYTES + palette.length * Integer.BYTES;
+		
+		for (int section = 0; section < SECTION_COUNT; ++section) {
+			if (sectionBlocks[section] != null) {
+				bytes += SECTION_VOLUME * Short.BYTES + sectionCounts[section].length * Integer.BYTES;
 			}
 			
-			if (blocks[x][y - 1][z] != null) {
-				blocks[x][y - 1][z].setTopBlock(block);
+			if (sectionLight[section] != null) {
+				bytes += SECTION_VOLUME;
 			}
 		}
 		
-		if (y < CHUNK_SIZE - 1) {
-			if (block != null) {
-				block.setTopBlock(blocks[x][y + 1][z]);
+		return bytes;
+	}
+	
+	// Get the BlockType next to index on the given side, looking into the captured border of the
+	// neighbouring Chunk past the edge; null if that Chunk wasn't loaded
+	public BlockType getNeighbour(int index, Side side) {
+		int neighbour = neighbourIndex(index, side);
+		
+		if (neighbour < 0) {
+			byte ordinal = borders[side.ordinal() * FACE_AREA + faceIndex(index, side)];
+			
+			return ordinal < 0 ? null : BLOCK_TYPES[ordinal];
+		}
+		
+		return getBlock(neighbour);
+	}
+	
+	// Get the packed light next to index on the given side, looking into the captured border past the edge
+	public int getNeighbourLight(int index, Side side) {
+		int neighbour = neighbourIndex(index, side);
+		
+		if (neighbour < 0) {
+			return borderLight[side.ordinal() * FACE_AREA + faceIndex(index, side)] & 0xFF;
+		}
+		
+		return getLight(neighbour);
+	}
+	
+	@Override
+	public int getNeighbourLight(int x, int y, int z, Side side) {
+		return getNeighbourLight(index(x, y, z), side);
+	}
+	
+	// Whether the Block at x, y, z, up to one Block outside the Chunk, darkens the corners of the faces
+	// next to it. Blocks never seen count as solid, like the ground they usually are.
+	@Override
+	public boolean isOccluding(int x, int y, int z) {
+		int dx = offsetOf(x);
+		int dy = offsetOf(y);
+		int dz = offsetOf(z);
+		
+		if (dx == 0 && dy == 0 && dz == 0) {
+			return !getBlock(index(x, y, z)).isTransparent();
+		}
+		
+		byte ordinal;
+		if (isEdge(dx, dy, dz)) {
+			// Edges are stored along their one free axis
+			int along = dx == 0 ? x : (dy == 0 ? y : (dz == 0 ? z : 0));
+			ordinal = edges[neighbourCode(dx, dy, dz) * CHUNK_SIZE + along];
+		} else {
+			Side side = dx < 0 ? Side.Left : (dx > 0 ? Side.Right : (dy < 0 ? Side.Bottom : (dy > 0 ? Side.Top : (dz < 0 ? Side.Back : Side.Front))));
+			int own = index(x - dx, y - dy, z - dz);
+			ordinal = seenBorders[side.ordinal() * FACE_AREA + faceIndex(own, side)];
+		}
+		
+		return isOccluding(ordinal);
+	}
+	
+	private static boolean isOccluding(byte ordinal) {
+		return ordinal < 0 || !BLOCK_TYPES[ordinal].isTransparent();
+	}
+	
+	// Copy the Blocks of the neighbouring Chunk (null if not loaded) that touch the given side (render thread only)
+	void captureBorder(Side side, Chunk neighbour) {
+		int offset = side.ordinal() * FACE_AREA;
+		
+		if (neighbour == null) {
+			Arrays.fill(borders, offset, offset + FACE_AREA, (byte)-1);
+			Arrays.fill(borderLight, offset, offset + FACE_AREA, (byte)0);
+			return;
+		}
+		
+		// The neighbour touches this Chunk with its opposite layer
+		int layer = side.isPositive() ? 0 : CHUNK_SIZE - 1;
+		
+		for (int faceIndex = 0; faceIndex < FACE_AREA; ++faceIndex) {
+			int index = layerIndex(side, faceIndex, layer);
+			borders[offset + faceIndex] = (byte)neighbour.getBlock(index).ordinal();
+			seenBorders[offset + faceIndex] = borders[offset + faceIndex];
+			borderLight[offset + faceIndex] = (byte)neighbour.getLight(index);
+		}
+	}
+	
+	// Copy the Blocks along the edge or at the corner where the Chunk at an offset touches this one (render
+	// thread only). Without the Chunk, the last Blocks seen there are kept.
+	void captureEdge(int dx, int dy, int dz, Chunk neighbour) {
+		if (neighbour == null) {
+			return;
+		}
+		
+		int offset = neighbourCode(dx, dy, dz) * CHUNK_SIZE;
+		
+		for (int along = 0; along < CHUNK_SIZE; ++along) {
+			edges[offset + along] = (byte)neighbour.getBlock(edgeIndex(dx, dy, dz, along)).ordinal();
+		}
+	}
+	
+	// Get the index in the neighbouring Chunk at an offset of the Block along the edge (or at the corner) touching this one
+	private static int edgeIndex(int dx, int dy, int dz, int along) {
+		int x = dx == 0 ? along : (dx > 0 ? 0 : CHUNK_SIZE - 1);
+		int y = dy == 0 ? along : (dy > 0 ? 0 : CHUNK_SIZE - 1);
+		int z = dz == 0 ? along : (dz > 0 ? 0 : CHUNK_SIZE - 1);
+		
+		return index(x, y, z);
+	}
+	
+	// Get the sections with a face whose corners the Chunk at an offset (null if not loaded) now shades
+	// differently than when its edge was captured
+	int getStaleEdgeSections(int dx, int dy, int dz, Chunk neighbour) {
+		// Nothing new is known about a Chunk that isn't loaded
+		if (neighbour == null) {
+			return 0;
+		}
+		
+		int offset = neighbourCode(dx, dy, dz) * CHUNK_SIZE;
+		int stale = 0;
+		
+		for (int along = 0; along < CHUNK_SIZE; ++along) {
+			boolean occluding = !neighbour.getBlock(edgeIndex(dx, dy, dz, along)).isTransparent();
+			
+			if (occluding != isOccluding(edges[offset + along])) {
+				// Only the Blocks around the edge Block have faces it shades
+				int x = dx == 0 ? along : (dx > 0 ? CHUNK_SIZE : -1);
+				int y = dy == 0 ? along : (dy > 0 ? CHUNK_SIZE : -1);
+				int z = dz == 0 ? along : (dz > 0 ? CHUNK_SIZE : -1);
+				stale |= getSectionsShadedBy(x, y, z);
+			}
+		}
+		
+		return stale;
+	}
+	
+	// Get the sections holding solid Blocks next to (or diagonally next to) x, y, z, one Block outside the
+	// Chunk; the faces of those are the ones whose corners that Block shades. A coarser copy is meshed
+	// whole, and its cells can be solid where the Blocks aren't.
+	private int getSectionsShadedBy(int x, int y, int z) {
+		if (lod > 0) {
+			return ALL_SECTIONS;
+		}
+		
+		int sections = 0;
+		
+		for (int blockZ = Math.max(z - 1, 0); blockZ <= Math.min(z + 1, CHUNK_SIZE - 1); ++blockZ) {
+			for (int blockY = Math.max(y - 1, 0); blockY <= Math.min(y + 1, CHUNK_SIZE - 1); ++blockY) {
+				for (int blockX = Math.max(x - 1, 0); blockX <= Math.min(x + 1, CHUNK_SIZE - 1); ++blockX) {
+					if (getBlock(index(blockX, blockY, blockZ)) != BlockType.Air) {
+						sections |= 1 << (blockY / SECTION_HEIGHT);
+					}
+				}
+			}
+		}
+		
+		return sections;
+	}
+	
+	// Get the sections with a face that the neighbouring Chunk (null if not loaded) now shows, hides,
+	// lights or shades differently than when its border was captured
+	int getStaleSections(Side side, Chunk neighbour) {
+		int offset = side.ordinal() * FACE_AREA;
+		int ownLayer = side.isPositive() ? CHUNK_SIZE - 1 : 0;
+		int neighbourLayer = CHUNK_SIZE - 1 - ownLayer;
+		int stale = 0;
+		
+		for (int faceIndex = 0; faceIndex < FACE_AREA; ++faceIndex) {
+			int index = layerIndex(side, faceIndex, ownLayer);
+			int neighbourIndex = layerIndex(side, faceIndex, neighbourLayer);
+			
+			// Blocks across the side shade the corners of the faces around them, even next to Air
+			if (neighbour != null && neighbour.getBlock(neighbourIndex).isTransparent() == isOccluding(seenBorders[offset + faceIndex])) {
+				stale |= getSectionsShadedBy(indexX(index) + side.dx, indexY(index) + side.dy, indexZ(index) + side.dz);
 			}
 			
-			if (blocks[x][y + 1][z] != null) {
-				blocks[x][y + 1][z].setBottomBlock(block);
+			// Only solid Blocks have a face to show or hide, though in a coarser copy a cell can be solid over Air
+			if (getBlock(index) == BlockType.Air && (lod == 0 || isCellEmpty(index))) {
+				continue;
+			}
+			
+			boolean wasExposed = borders[offset + faceIndex] == BlockType.Air.ordinal();
+			boolean exposed = neighbour != null && neighbour.getBlock(neighbourIndex) == BlockType.Air;
+			
+			if (wasExposed != exposed || (exposed && borderLight[offset + faceIndex] != (byte)neighbour.getLight(neighbourIndex))) {
+				stale |= 1 << (indexY(index) / SECTION_HEIGHT);
+			}
+		}
+		
+		return stale;
+	}
+	
+	// Get the sections whose faces change when the Block at y changes: its own, and the one
+	// above or below when it lies on the edge of a section
+	static int getSectionsAround(int y) {
+		int section = y / SECTION_HEIGHT;
+		int sections = 1 << section;
+		
+		if (y % SECTION_HEIGHT == 0 && section > 0) {
+			sections |= 1 << (section - 1);
+		}
+		
+		if (y % SECTION_HEIGHT == SECTION_HEIGHT - 1 && section < SECTION_COUNT - 1) {
+			sections |= 1 << (section + 1);
+		}
+		
+		return sections;
+	}
+	
+	public int getX() {
+		return chunkX;
+	}
+	
+	public int getY() {
+		return chunkY;
+	}
+	
+	public int getZ() {
+		return chunkZ;
+	}
+	
+	// Whether the mesh no longer matches the Blocks
+	boolean isDirty() {
+		return dirtySections != 0;
+	}
+	
+	void markDirty() {
+		dirtySections = ALL_SECTIONS;
+	}
+	
+	void markDirty(int sections) {
+		dirtySections |= sections;
+	}
+	
+	int getLod() {
+		return lod;
+	}
+	
+	// Change the level of detail, meshing the whole Chunk again if it changed
+	void setLod(int lod) {
+		if (lod != this.lod) {
+			this.lod = lod;
+			dirtySections = ALL_SECTIONS;
+		}
+	}
+	
+	int getSeams() {
+		return seams;
+	}
+	
+	// Change which sides are seams (render thread only), meshing the whole Chunk again if they changed
+	void setSeams(int seams) {
+		if (seams != this.seams) {
+			this.seams = seams;
+			dirtySections = ALL_SECTIONS;
+		}
+	}
+	
+	// Get how many vertices the uploaded mesh holds
+	int getVertexCount() {
+		return buffer == null ? 0 : buffer.getQuadCount() * ChunkMesh.VERTICES_PER_QUAD;
+	}
+	
+	// Copy the Chunk to be meshed again on a worker (render thread only), handing it the meshes and
+	// dirty sections. Until the copy comes back through finishMeshing, the Chunk keeps drawing what
+	// was last uploaded and can't be built.
+	Chunk copyForMeshing() {
+		Chunk copy = new Chunk(this);
+		mesh = null;
+		sectionMeshes = null;
+		dirtySections = 0;
+		
+		return copy;
+	}
+	
+	// Take the meshes back from a copy made by copyForMeshing (render thread only). Sections changed since
+	// the copy was made, or left unbuilt, stay dirty.
+	void finishMeshing(Chunk copy) {
+		mesh = copy.mesh;
+		sectionMeshes = copy.sectionMeshes;
+		dirtySections |= copy.dirtySections;
+	}
+	
+	// Whether a copy of the Chunk is being meshed on a worker
+	boolean isMeshing() {
+		return mesh == null;
+	}
+	
+	// Get the loaded Chunk this is a copy of, or null if it isn't a copy
+	Chunk getOriginal() {
+		return original;
+	}
+	
+	public boolean isModified() {
+		return modified;
+	}
+	
+	public void setModified(boolean modified) {
+		this.modified = modified;
+	}
+	
+	// Render the current Chunk in a single draw call, returning how many vertices were drawn
+	int render() {
+		if (buffer == null) {
+			return 0;
+		}
+		
+		UPLOADER.draw(buffer);
+		
+		return buffer.getQuadCount() * ChunkMesh.VERTICES_PER_QUAD;
+	}
+	
+	public void setBlock(int index, BlockType type) {
+		store(index, getPaletteIndex(type));
+		dirtySections |= getSectionsAround(indexY(index));
+		modified = true;
+	}
+	
+	// Set every Block from start (inclusive) to end (exclusive) in index order
+	public void setBlocks(int start, int end, BlockType type) {
+		short paletteIndex = getPaletteIndex(type);
+		
+		if (start == 0 && end == CHUNK_VOLUME) {
+			// Make every section uniform without touching single Blocks
+			for (int section = 0; section < SECTION_COUNT; ++section) {
+				demote(section, paletteIndex);
+			}
+		} else {
+			for (int index = start; index < end; ++index) {
+				store(index, paletteIndex);
 			}
 		}
 		
-		if (z > 0) {
-			if (block != null) {
-				block.setBackBlock(blocks[x][y][z - 1]);
+		dirtySections = ALL_SECTIONS;
+		modified = true;
+	}
+	
+	private void store(int index, short paletteIndex) {
+		int section = sectionOf(index);
+		short[] cells = sectionBlocks[section];
+		
+		if (cells == null) {
+			// Nothing to store if the section is already all this BlockType
+			if (uniformBlocks[section] == paletteIndex) {
+				return;
 			}
 			
-			if (blocks[x][y][z - 1] != null) {
-				blocks[x][y][z - 1].setFrontBlock(block);
+			cells = promote(section);
+		}
+		
+		int cell = cellIndex(index);
+		short previous = cells[cell];
+		
+		if (previous == paletteIndex) {
+			return;
+		}
+		
+		cells[cell] = paletteIndex;
+		int[] counts = sectionCounts[section];
+		--counts[previous];
+		
+		// Drop the array once every Block in the section is the same again
+		if (++counts[paletteIndex] == SECTION_VOLUME) {
+			demote(section, paletteIndex);
+		}
+	}
+	
+	// Give a uniform section an array of its Blocks, so they can differ
+	private short[] promote(int section) {
+		short[] cells = new short[SECTION_VOLUME];
+		Arrays.fill(cells, uniformBlocks[section]);
+		
+		int[] counts = new int[paletteLookup.length];
+		counts[uniformBlocks[section]] = SECTION_VOLUME;
+		
+		sectionBlocks[section] = cells;
+		sectionCounts[section] = counts;
+		
+		return cells;
+	}
+	
+	private void demote(int section, short paletteIndex) {
+		sectionBlocks[section] = null;
+		sectionCounts[section] = null;
+		uniformBlocks[section] = paletteIndex;
+	}
+	
+	public void setBlock(int x, int y, int z, BlockType type) {
+		setBlock(index(x, y, z), type);
+	}
+	
+	private short getPaletteIndex(BlockType type) {
+		short paletteIndex = paletteLookup[type.ordinal()];
+		
+		// Add the BlockType to the palette the first time it is used
+		if (paletteIndex < 0) {
+			paletteIndex = addToPalette(type);
+		}
+		
+		return paletteIndex;
+	}
+	
+	private short addToPalette(BlockType type) {
+		// Grow the palette if it is full
+		if (paletteSize == palette.length) {
+			palette = Arrays.copyOf(palette, palette.length * 2);
+		}
+		
+		short paletteIndex = (short)paletteSize++;
+		palette[paletteIndex] = type;
+		paletteLookup[type.ordinal()] = paletteIndex;
+		
+		return paletteIndex;
+	}
+	
+	// Build on the render thread
+	void build() {
+		build(MESHER);
+	}
+	
+	// Build the merged faces of the changed sections and put the Chunk's mesh back together
+	// (can run on any thread that owns the Chunk)
+	void build(ChunkMesher mesher) {
+		// A coarser copy is meshed whole, as it is small and quick to mesh
+		if (lod > 0) {
+			if (isEmpty()) {
+				mesh.clear();
+			} else {
+				DownsampledChunk copy = DOWNSAMPLED.get();
+				copy.downsample(this, lod);
+				mesher.build(copy, mesh);
 			}
+			
+			dirtySections = 0;
+			return;
 		}
 		
-		if (z < CHUNK_SIZE - 1) {
-			if (block != null) {
-				block.setFrontBlock(blocks[x][y][z + 1]);
+		for (int section = 0; section < SECTION_COUNT; ++section) {
+			if ((dirtySections & (1 << section)) == 0) {
+				continue;
 			}
 			
-			if (blocks[x][y][z + 1] != null) {
-				blocks[x][y][z + 1].setBackBlock(block);
-			}
-		}
-	}
-	
-	void update() {
-		// If the display list exists, delete it
-		if (displayList != 0) {
-			glDeleteLists(displayList, 1);
-		}
-		
-		// Create a new display list
-		displayList = glGenLists(1);
-		
-		// Start populating the display list
-		glNewList(displayList, GL_COMPILE);
-		
-		// Render each Block
-		for (int x = 0; x < CHUNK_SIZE; ++x) {
-			for (int y = 0; y < CHUNK_SIZE; ++y) {
-				for (int z = 0; z < CHUNK_SIZE; ++z) {
-					if (blocks[x][y][z] != null) {
-						// Push the current location
-						glPushMatrix();
-						
-						// Calculate the Block location in the Chunk
-                        float xPos = x * Block.DEFAULT_SIZE;
-                        float yPos = y * Block.DEFAULT_SIZE;
-                        float zPos = z * Block.DEFAULT_SIZE;
-						
-						// Translate to the Block location in the Chunk
-						glTranslatef(xPos, yPos, zPos);
-						
-						// Render the Block (if possible)
-						blocks[x][y][z].render();
-						
-						// Get back the pushed location
-						glPopMatrix();
-					}
-				}
+			// Empty sections (most of the sky) have no faces, whatever their neighbours hold
+			if (isSectionEmpty(section)) {
+				sectionMeshes[section].clear();
+			} else {
+				mesher.buildSection(this, sectionMeshes[section], section);
+			}
+		}
+		
+		mesh.clear();
+		for (ChunkMesh sectionMesh : sectionMeshes) {
+			mesh.append(sectionMesh);
+		}
+		
+		dirtySections = 0;
+	}
+	
+	// Send the built mesh to the GPU (render thread only)
+	void upload() {
+		// Create the GPU copy the first time the Chunk has anything to draw
+		if (buffer == null) {
+			if (mesh.getQuadCount() == 0) {
+				return;
 			}
+			
+			buffer = UPLOADER.create();
 		}
 		
-		// Stop populating the display list
-		glEndList();
+		// Replace the GPU copy with the new mesh
+		UPLOADER.upload(buffer, mesh);
+	}
+	
+	void delete() {
+		// Free the GPU copy
+		if (buffer != null) {
+			UPLOADER.delete(buffer);
+			buffer = null;
+		}
 	}
 }
@@ -0,0 +1,183 @@
+package com.voxels;
+
+import java.util.Arrays;
+
+import com.voxels.Block.BlockType;
+
+// The loaded Chunks stacked at one x, z, with a heightmap of the highest solid Block in each
+// of its Block columns, so the surface is known without searching down through the sky
+class ChunkColumn {
+	// Height of a Block column with no solid Block in the loaded Chunks
+	static final int NO_HEIGHT = Integer.MIN_VALUE;
+	
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+	
+	// Loaded Chunks, lowest first
+	private Chunk[] chunks = new Chunk[4];
+	private int chunkCount = 0;
+	// World y of the highest solid Block at each x + z * 16
+	private int[] heights = new int[Chunk.FACE_AREA];
+	private int chunkX = 0;
+	private int chunkZ = 0;
+	// Level of detail every Chunk in the column is meshed at, so Chunks above one another never differ
+	private int lod = 0;
+	
+	ChunkColumn(int chunkX, int chunkZ) {
+		this.chunkX = chunkX;
+		this.chunkZ = chunkZ;
+		
+		Arrays.fill(heights, NO_HEIGHT);
+	}
+	
+	int getX() {
+		return chunkX;
+	}
+	
+	int getZ() {
+		return chunkZ;
+	}
+	
+	boolean isEmpty() {
+		return chunkCount == 0;
+	}
+	
+	int getChunkCount() {
+		return chunkCount;
+	}
+	
+	// Get a loaded Chunk by its place in the column, lowest first
+	Chunk getChunkAt(int index) {
+		return chunks[index];
+	}
+	
+	int getLod() {
+		return lod;
+	}
+	
+	// Mesh every Chunk in the column at another level of detail
+	void setLod(int lod) {
+		this.lod = lod;
+		
+		for (int index = 0; index < chunkCount; ++index) {
+			chunks[index].setLod(lod);
+		}
+	}
+	
+	// Get the world y of the highest solid Block at local x, z, or NO_HEIGHT if there is none
+	int getHeight(int x, int z) {
+		return heights[x + z * SIZE];
+	}
+	
+	// Copy the height of every Block column (at x + z * 16) into heights
+	void copyHeights(int[] heights) {
+		System.arraycopy(this.heights, 0, heights, 0, Chunk.FACE_AREA);
+	}
+	
+	// Get the chunk y of the lowest loaded Chunk
+	int getLowestChunk() {
+		return chunks[0].getY();
+	}
+	
+	// Get the loaded Chunk at chunkY, or null (the few Chunks in a column are quicker to search than to hash)
+	Chunk getChunk(int chunkY) {
+		for (int index = 0; index < chunkCount; ++index) {
+			if (chunks[index].getY() == chunkY) {
+				return chunks[index];
+			}
+		}
+		
+		return null;
+	}
+	
+	void add(Chunk chunk) {
+		if (chunkCount == chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunks.length * 2);
+		}
+		
+		// Keep the Chunks in order of height
+		int index = chunkCount;
+		while (index > 0 && chunks[index - 1].getY() > chunk.getY()) {
+			chunks[index] = chunks[index - 1];
+			--index;
+		}
+		chunks[index] = chunk;
+		++chunkCount;
+		chunk.setLod(lod);
+		
+		// Raise the heights the new Chunk has solid Blocks above
+		int bottom = chunk.getY() * SIZE;
+		for (int z = 0; z < SIZE; ++z) {
+			for (int x = 0; x < SIZE; ++x) {
+				if (heights[x + z * SIZE] >= bottom + SIZE - 1) {
+					continue;
+				}
+				
+				int y = chunk.getHighestBlock(x, z, SIZE - 1);
+				
+				if (y >= 0 && bottom + y > heights[x + z * SIZE]) {
+					heights[x + z * SIZE] = bottom + y;
+				}
+			}
+		}
+	}
+	
+	void remove(Chunk chunk) {
+		int index = 0;
+		while (index < chunkCount && chunks[index] != chunk) {
+			++index;
+		}
+		
+		if (index == chunkCount) {
+			return;
+		}
+		
+		System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+		chunks[--chunkCount] = null;
+		
+		// Search again below the heights that were inside the Chunk
+		int bottom = chunk.getY() * SIZE;
+		for (int z = 0; z < SIZE; ++z) {
+			for (int x = 0; x < SIZE; ++x) {
+				int height = heights[x + z * SIZE];
+				
+				if (height >= bottom && height < bottom + SIZE) {
+					heights[x + z * SIZE] = findHeight(x, z, bottom - 1);
+				}
+			}
+		}
+	}
+	
+	// Keep the heightmap up to date after the Block at local x, z and world y was set
+	void setBlock(int x, int y, int z, BlockType type) {
+		int height = heights[x + z * SIZE];
+		
+		if (type != BlockType.Air) {
+			if (y > height) {
+				heights[x + z * SIZE] = y;
+			}
+		} else if (y == height) {
+			heights[x + z * SIZE] = findHeight(x, z, y - 1);
+		}
+	}
+	
+	// Find the highest solid Block at local x, z no higher than world y maxY
+	private int findHeight(int x, int z, int maxY) {
+		// Go down through the Chunks from the top, skipping any above maxY
+		for (int index = chunkCount - 1; index >= 0; --index) {
+			Chunk chunk = chunks[index];
+			int bottom = chunk.getY() * SIZE;
+			
+			if (bottom > maxY) {
+				continue;
+			}
+			
+			int y = chunk.getHighestBlock(x, z, Math.min(maxY - bottom, SIZE - 1));
+			
+			if (y >= 0) {
+				return bottom + y;
+			}
+		}
+		
+		return NO_HEIGHT;
+	}
+}
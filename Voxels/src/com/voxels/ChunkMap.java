@@ -0,0 +1,150 @@
+package com.voxels;
+
+import java.util.Arrays;
+
+// Open addressing map from packed chunk coordinates to Chunks (or anything else kept per chunk
+// position), so lookups never box or allocate
+class ChunkMap<T> {
+	private static final int COORDINATE_BITS = 21;
+	private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private long[] keys = null;
+	private Object[] values = null;
+	private int size = 0;
+	
+	ChunkMap() {
+		keys = new long[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+	}
+	
+	// Pack chunk coordinates into a single key (21 bits per axis)
+	static long key(int chunkX, int chunkY, int chunkZ) {
+		return ((chunkX & COORDINATE_MASK) << (2 * COORDINATE_BITS))
+				| ((chunkY & COORDINATE_MASK) << COORDINATE_BITS)
+				| (chunkZ & COORDINATE_MASK);
+	}
+	
+	int capacity() {
+		return values.length;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	// Get the value in a slot (null for an empty slot), used to iterate the map
+	@SuppressWarnings("unchecked")
+	T valueAt(int slot) {
+		return (T)values[slot];
+	}
+	
+	long keyAt(int slot) {
+		return keys[slot];
+	}
+	
+	@SuppressWarnings("unchecked")
+	T get(long key) {
+		int mask = values.length - 1;
+		
+		// Probe until the key or an empty slot is found
+		for (int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return (T)values[slot];
+			}
+		}
+		
+		return null;
+	}
+	
+	void put(long key, T value) {
+		// Keep the table at most half full so probes stay short
+		if ((size + 1) * 2 > values.length) {
+			resize(values.length * 2);
+		}
+		
+		int mask = values.length - 1;
+		int slot = hash(key) & mask;
+		
+		while (values[slot] != null) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			
+			slot = (slot + 1) & mask;
+		}
+		
+		keys[slot] = key;
+		values[slot] = value;
+		++size;
+	}
+	
+	@SuppressWarnings("unchecked")
+	T remove(long key) {
+		int mask = values.length - 1;
+		int slot = hash(key) & mask;
+		
+		// Find the key
+		while (values[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		
+		T removed = (T)values[slot];
+		
+		if (removed == null) {
+			return null;
+		}
+		
+		// Shift the following entries back so no probe sequence is broken
+		int hole = slot;
+		for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+			int home = hash(keys[next]) & mask;
+			
+			// Move the entry if the hole lies between its home slot and where it is now
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+		}
+		
+		values[hole] = null;
+		--size;
+		
+		return removed;
+	}
+	
+	void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		
+		keys = new long[capacity];
+		values = new Object[capacity];
+		size = 0;
+		
+		// Reinsert every entry into the new table
+		for (int slot = 0; slot < oldValues.length; ++slot) {
+			if (oldValues[slot] != null) {
+				put(oldKeys[slot], (T)oldValues[slot]);
+			}
+		}
+	}
+	
+	private static int hash(long key) {
+		// Mix the bits (MurmurHash3 finalizer) so neighbouring chunks spread over the table
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		
+		return (int)key;
+	}
+}
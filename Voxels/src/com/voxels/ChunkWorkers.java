@@ -0,0 +1,125 @@
+package com.voxels;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.voxels.graphics.ChunkMesher;
+import com.voxels.terrain.TerrainGenerator;
+import com.voxels.util.BoundedQueue;
+
+// Generates and meshes Chunks on a pool of worker threads, and meshes loaded Chunks again from copies.
+// Finished Chunks come back through a bounded queue; only the render thread may submit and poll,
+// everything GL stays on that thread.
+class ChunkWorkers {
+	private final ForkJoinPool pool;
+	private final BoundedQueue<Chunk> completed;
+	private final ThreadLocal<ChunkMesher> meshers = ThreadLocal.withInitial(ChunkMesher::new);
+	// Jobs submitted and not yet polled, never more than the queue can hold
+	private int inFlight = 0;
+	// Generation statistics, summed over all workers without contention
+	private final LongAdder generatedChunks = new LongAdder();
+	private final LongAdder generationNanos = new LongAdder();
+	
+	ChunkWorkers(int threads, int capacity) {
+		pool = new ForkJoinPool(threads);
+		completed = new BoundedQueue<Chunk>(capacity);
+	}
+	
+	// Queue a Chunk to be generated and meshed, or return false if too many are in flight
+	boolean submit(Chunk chunk, TerrainGenerator generator) {
+		return execute(chunk, () -> {
+			// Time the generation alone, so throughput can be compared between generators
+			long start = System.nanoTime();
+			generator.generate(chunk);
+			generationNanos.add(System.nanoTime() - start);
+			generatedChunks.increment();
+			
+			LightEngine.lightGenerated(chunk, generator);
+			chunk.build(meshers.get());
+		});
+	}
+	
+	// Queue the dirty sections of a loaded Chunk to be meshed again, or return false if too many are in
+	// flight. A copy of the Chunk comes back through poll, to hand the meshes back to it.
+	boolean remesh(Chunk chunk) {
+		if (isFull()) {
+			return false;
+		}
+		
+		Chunk copy = chunk.copyForMeshing();
+		
+		if (!execute(copy, () -> copy.build(meshers.get()))) {
+			chunk.finishMeshing(copy);
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private boolean execute(Chunk chunk, Runnable job) {
+		if (isFull()) {
+			return false;
+		}
+		
+		try {
+			pool.execute(() -> {
+				try {
+					job.run();
+				} catch (RuntimeException e) {
+					// Hand the Chunk back anyway so the World doesn't wait for it forever
+					System.err.println("Could not build chunk " + chunk.getX() + ", " + chunk.getY() + ", " + chunk.getZ());
+					e.printStackTrace(System.err);
+				}
+				
+				// Can't fail, as no more Chunks are in flight than the queue holds
+				completed.offer(chunk);
+			});
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+		
+		++inFlight;
+		return true;
+	}
+	
+	// Whether nothing more can be submitted until finished Chunks are polled
+	boolean isFull() {
+		return inFlight == completed.capacity();
+	}
+	
+	// Get the next finished Chunk (or copy of one meshed again), or null if none are ready
+	Chunk poll() {
+		Chunk chunk = completed.poll();
+		
+		if (chunk != null) {
+			--inFlight;
+		}
+		
+		return chunk;
+	}
+	
+	long getGeneratedChunks() {
+		return generatedChunks.sum();
+	}
+	
+	// Get the Chunks generated per second of worker time (the throughput of a single core)
+	double getChunksPerCoreSecond() {
+		long nanos = generationNanos.sum();
+		
+		return nanos == 0 ? 0 : generatedChunks.sum() * 1e9 / nanos;
+	}
+	
+	void shutdown() {
+		// Let running jobs finish rather than interrupting them, as an interrupt
+		// closes any region file a job is reading from
+		pool.shutdown();
+		
+		try {
+			pool.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
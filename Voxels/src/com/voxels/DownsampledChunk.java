@@ -0,0 +1,249 @@
+package com.voxels;
+
+import java.util.Arrays;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+import com.voxels.graphics.MeshSource;
+
+// A coarser copy of a Chunk's Blocks for drawing it far away. Each cell stands for a cube of 2, 4 or 8
+// Blocks on a side and holds the most common solid BlockType in it, if at least half of the cube is solid
+// (cells against the sides are solid more often, so the copy meets its neighbours without gaps).
+// The cells around the copy come from the Blocks the Chunk captured of its neighbours, so it can be made
+// on whichever thread meshes the Chunk. Reused from Chunk to Chunk, so each thread needs its own.
+class DownsampledChunk implements MeshSource {
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+	private static final BlockType[] BLOCK_TYPES = BlockType.values();
+	private static final Side[] SIDES = Side.values();
+	// Cells along each axis of the finest copy, and with the shell of neighbouring cells around them
+	private static final int MAX_SIZE = SIZE / 2;
+	private static final int MAX_PADDED = MAX_SIZE + 2;
+	
+	// Ordinal of each cell, inside a shell of the neighbours' cells, at (x + 1) + (y + 1) * padded +
+	// (z + 1) * padded * padded; -1 in the shell where the neighbour isn't loaded
+	private byte[] cells = new byte[MAX_PADDED * MAX_PADDED * MAX_PADDED];
+	// Packed light of each cell (the brightest of the Air in it), laid out like the cells
+	private byte[] light = new byte[MAX_PADDED * MAX_PADDED * MAX_PADDED];
+	// Whether each cell darkens the corners of the faces next to it, laid out like the cells
+	private boolean[] occluding = new boolean[MAX_PADDED * MAX_PADDED * MAX_PADDED];
+	// Blocks of each BlockType in each cell inside the copy, at cell * BLOCK_TYPES.length + ordinal
+	private int[] counts = new int[MAX_SIZE * MAX_SIZE * MAX_SIZE * BLOCK_TYPES.length];
+	// Solid Blocks of the outer layer of each cell against the side being captured, laid out like the cells
+	private int[] layerSolids = new int[MAX_PADDED * MAX_PADDED * MAX_PADDED];
+	private int size = 0;
+	private int scale = 0;
+	private int padded = 0;
+	// Sides of the Chunk that are seams between levels of detail
+	private int seams = 0;
+	
+	// Copy the Chunk at a level of detail from 1 up, with cells 2 to the power of level Blocks on a side
+	void downsample(Chunk chunk, int level) {
+		scale = 1 << level;
+		size = SIZE / scale;
+		padded = size + 2;
+		seams = chunk.getSeams();
+		
+		int paddedVolume = padded * padded * padded;
+		Arrays.fill(cells, 0, paddedVolume, (byte)-1);
+		Arrays.fill(light, 0, paddedVolume, (byte)0);
+		Arrays.fill(counts, 0, size * size * size * BLOCK_TYPES.length, 0);
+		
+		// Count the BlockTypes in each cell, and keep the brightest light of its Air
+		for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+			int x = Chunk.indexX(index) / scale;
+			int y = Chunk.indexY(index) / scale;
+			int z = Chunk.indexZ(index) / scale;
+			BlockType type = chunk.getBlock(index);
+			
+			++counts[(x + y * size + z * size * size) * BLOCK_TYPES.length + type.ordinal()];
+			
+			if (type == BlockType.Air) {
+				int cell = cellIndex(x, y, z);
+				light[cell] = (byte)brighter(light[cell], chunk.getLight(index));
+			}
+		}
+		
+		// Fill each cell with the most common solid BlockType if at least half of it is solid; ties go
+		// to the later BlockType, so the surface (Grass, Sand) wins over the Dirt under it
+		int volume = scale * scale * scale;
+		for (int z = 0; z < size; ++z) {
+			for (int y = 0; y < size; ++y) {
+				for (int x = 0; x < size; ++x) {
+					int offset = (x + y * size + z * size * size) * BLOCK_TYPES.length;
+					BlockType type = BlockType.Air;
+					
+					if (counts[offset + BlockType.Air.ordinal()] * 2 <= volume) {
+						type = getMostCommonSolid(offset);
+					}
+					
+					cells[cellIndex(x, y, z)] = (byte)type.ordinal();
+				}
+			}
+		}
+		
+		captureBorders(chunk);
+		findOccluding(chunk);
+	}
+	
+	// Fill the shell's cells beside each side from the Blocks the Chunk captured across it. A cell is Air if
+	// any of the Blocks it covers is, so a face next to it is only hidden behind a solid layer of the neighbour.
+	// The cells against the side are made to cover what the neighbour hides its faces behind: across a seam any
+	// solid Block in their outer layer, as a neighbour at full detail hides its faces behind single Blocks, and
+	// otherwise a solid outer layer, which a neighbour at the same level hides its faces behind.
+	private void captureBorders(Chunk chunk) {
+		for (Side side : SIDES) {
+			int ownLayer = side.isPositive() ? SIZE - 1 : 0;
+			boolean seam = (seams & (1 << side.ordinal())) != 0;
+			
+			Arrays.fill(layerSolids, 0);
+			
+			for (int faceIndex = 0; faceIndex < Chunk.FACE_AREA; ++faceIndex) {
+				int index = Chunk.layerIndex(side, faceIndex, ownLayer);
+				int x = Chunk.indexX(index) / scale;
+				int y = Chunk.indexY(index) / scale;
+				int z = Chunk.indexZ(index) / scale;
+				
+				if (chunk.getBlock(index) != BlockType.Air) {
+					++layerSolids[cellIndex(x, y, z)];
+				}
+				
+				BlockType neighbour = chunk.getNeighbour(index, side);
+				
+				if (neighbour == null) {
+					continue;
+				}
+				
+				int cell = cellIndex(x + side.dx, y + side.dy, z + side.dz);
+				
+				if (neighbour == BlockType.Air) {
+					cells[cell] = (byte)BlockType.Air.ordinal();
+				} else if (cells[cell] < 0) {
+					cells[cell] = (byte)neighbour.ordinal();
+				}
+				
+				light[cell] = (byte)brighter(light[cell], chunk.getNeighbourLight(index, side));
+			}
+			
+			// Fill the cells against the side that need it with their most common solid BlockType
+			int needed = seam ? 1 : scale * scale;
+			
+			for (int faceIndex = 0; faceIndex < Chunk.FACE_AREA; ++faceIndex) {
+				int index = Chunk.layerIndex(side, faceIndex, ownLayer);
+				int x = Chunk.indexX(index) / scale;
+				int y = Chunk.indexY(index) / scale;
+				int z = Chunk.indexZ(index) / scale;
+				int cell = cellIndex(x, y, z);
+				
+				if (cells[cell] == BlockType.Air.ordinal() && layerSolids[cell] >= needed) {
+					cells[cell] = (byte)getMostCommonSolid((x + y * size + z * size * size) * BLOCK_TYPES.length).ordinal();
+				}
+			}
+		}
+	}
+	
+	// Get the most common solid BlockType in the cell whose counts start at offset; ties go to the later one
+	private BlockType getMostCommonSolid(int offset) {
+		BlockType type = BlockType.Air;
+		int most = 0;
+		
+		for (BlockType solid : BLOCK_TYPES) {
+			if (solid != BlockType.Air && counts[offset + solid.ordinal()] >= most) {
+				most = counts[offset + solid.ordinal()];
+				type = solid;
+			}
+		}
+		
+		return type;
+	}
+	
+	// Work out which cells shade corners. Cells of the shell do if at least half the Blocks they cover
+	// that the Chunk knows of do (only the layer, edge or corner touching the Chunk).
+	private void findOccluding(Chunk chunk) {
+		for (int z = -1; z <= size; ++z) {
+			for (int y = -1; y <= size; ++y) {
+				for (int x = -1; x <= size; ++x) {
+					int cell = cellIndex(x, y, z);
+					
+					if (x >= 0 && x < size && y >= 0 && y < size && z >= 0 && z < size) {
+						occluding[cell] = cells[cell] != BlockType.Air.ordinal();
+						continue;
+					}
+					
+					int solid = 0;
+					int samples = 0;
+					
+					for (int blockZ = firstBlock(z); blockZ <= lastBlock(z); ++blockZ) {
+						for (int blockY = firstBlock(y); blockY <= lastBlock(y); ++blockY) {
+							for (int blockX = firstBlock(x); blockX <= lastBlock(x); ++blockX) {
+								solid += chunk.isOccluding(blockX, blockY, blockZ) ? 1 : 0;
+								++samples;
+							}
+						}
+					}
+					
+					occluding[cell] = solid * 2 >= samples;
+				}
+			}
+		}
+	}
+	
+	// Get the first and last Block coordinate a cell coordinate covers, with the shell's cells covering
+	// only the one layer of Blocks outside the Chunk
+	private int firstBlock(int cell) {
+		return cell < 0 ? -1 : (cell >= size ? SIZE : cell * scale);
+	}
+	
+	private int lastBlock(int cell) {
+		return cell < 0 ? -1 : (cell >= size ? SIZE : cell * scale + scale - 1);
+	}
+	
+	private int cellIndex(int x, int y, int z) {
+		return (x + 1) + (y + 1) * padded + (z + 1) * padded * padded;
+	}
+	
+	// Get the brighter of each kind of light in two packed lights
+	private static int brighter(int first, int second) {
+		return Math.max(first & 0xF0, second & 0xF0) | Math.max(first & 0x0F, second & 0x0F);
+	}
+	
+	@Override
+	public int getSize() {
+		return size;
+	}
+	
+	@Override
+	public BlockType getBlock(int x, int y, int z) {
+		return BLOCK_TYPES[cells[cellIndex(x, y, z)]];
+	}
+	
+	@Override
+	public boolean isFaceVisible(int x, int y, int z, Side side) {
+		int neighbourX = x + side.dx;
+		int neighbourY = y + side.dy;
+		int neighbourZ = z + side.dz;
+		byte neighbour = cells[cellIndex(neighbourX, neighbourY, neighbourZ)];
+		
+		// Faces toward a Chunk that isn't loaded stay hidden, as in a Chunk meshed at full detail
+		if (neighbour < 0) {
+			return false;
+		}
+		
+		// Keep every face across a seam, as the neighbour is drawn finer or coarser than the shell's cells
+		boolean outside = neighbourX < 0 || neighbourX >= size || neighbourY < 0 || neighbourY >= size || neighbourZ < 0 || neighbourZ >= size;
+		if (outside && (seams & (1 << side.ordinal())) != 0) {
+			return true;
+		}
+		
+		return neighbour == BlockType.Air.ordinal();
+	}
+	
+	@Override
+	public int getNeighbourLight(int x, int y, int z, Side side) {
+		return light[cellIndex(x + side.dx, y + side.dy, z + side.dz)] & 0xFF;
+	}
+	
+	@Override
+	public boolean isOccluding(int x, int y, int z) {
+		return occluding[cellIndex(x, y, z)];
+	}
+}
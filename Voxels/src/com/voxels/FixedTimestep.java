@@ -0,0 +1,44 @@
+package com.voxels;
+
+// Splits real time into fixed-length ticks, carrying whatever is left over to the next frame
+class FixedTimestep {
+	// Longest stretch of time caught up on at once, so a stall doesn't snowball into ever more ticks
+	private static final long MAX_CATCH_UP_NANOS = 250_000_000L;
+	
+	private long tickNanos = 0;
+	// Time the simulation has reached
+	private long simulatedTime = 0;
+	
+	FixedTimestep(int ticksPerSecond, long now) {
+		tickNanos = 1_000_000_000L / ticksPerSecond;
+		simulatedTime = now;
+	}
+	
+	// Advance by one tick if one is due by now
+	boolean step(long now) {
+		// Drop time the simulation can't catch up on
+		if (now - simulatedTime > MAX_CATCH_UP_NANOS) {
+			simulatedTime = now - MAX_CATCH_UP_NANOS;
+		}
+		
+		if (now - simulatedTime < tickNanos) {
+			return false;
+		}
+		
+		simulatedTime += tickNanos;
+		
+		return true;
+	}
+	
+	long getTickNanos() {
+		return tickNanos;
+	}
+	
+	long getSimulatedTime() {
+		return simulatedTime;
+	}
+	
+	long getNanosUntilNextTick(long now) {
+		return simulatedTime + tickNanos - now;
+	}
+}
@@ -0,0 +1,194 @@
+package com.voxels;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+import com.voxels.graphics.NullMeshUploader;
+import com.voxels.graphics.StaxBlocksFormatParser;
+import com.voxels.math.Vec3f;
+import com.voxels.metrics.FrameMetrics;
+import com.voxels.metrics.Histogram;
+import com.voxels.terrain.NoiseTerrainGenerator;
+import com.voxels.terrain.TerrainGenerator;
+
+// Runs the CPU side of the game without a window or GL context: the same terrain generation, meshing,
+// Simulation and Block picking, driven tick by tick from an InputScript. Every tick waits for the
+// Chunks around the Player to finish, so a replay ends in the same state on any machine.
+class HeadlessReplay {
+	// How long to sleep while waiting for the workers
+	private static final long WAIT_NANOS = 100000;
+	
+	private InputScript script = null;
+	private ChunkWorkers workers = null;
+	private World world = null;
+	private Player player = null;
+	private Simulation simulation = null;
+	private BlockPicker picker = null;
+	private FrameMetrics metrics = null;
+	
+	// Totals over the replay
+	private long chunksMeshed = 0;
+	private long edits = 0;
+	private long sleepNanos = 0;
+	// Time spent meshing and uploading in the current tick
+	private long meshNanos = 0;
+	private long uploadNanos = 0;
+	
+	private HeadlessReplay(InputScript script) {
+		this.script = script;
+	}
+	
+	static void run(Path scriptPath) throws IOException {
+		new HeadlessReplay(InputScript.read(scriptPath)).run();
+	}
+	
+	private void run() throws IOException {
+		// Keep meshes on the CPU, but still give them real atlas tiles
+		Chunk.UPLOADER = new NullMeshUploader();
+		try (InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream("BlocksFormat.xml")) {
+			if (stream == null) {
+				throw new IOException("Could not find BlocksFormat.xml");
+			}
+			
+			new StaxBlocksFormatParser().parse(stream);
+		}
+		
+		// Set up the World as the game does, but without saving it
+		TerrainGenerator generator = new NoiseTerrainGenerator(Voxels.WORLD_SEED);
+		player = new Player();
+		Voxels.spawn(player, generator);
+		
+		workers = new ChunkWorkers(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), Voxels.CHUNKS_IN_FLIGHT);
+		world = new World(generator, null, Voxels.VIEW_DISTANCE, Voxels.VERTICAL_VIEW_DISTANCE, Voxels.LOD_DISTANCE, workers, Voxels.CHUNK_UPLOADS_PER_UPDATE);
+		
+		// Load the start area before timing anything
+		long loadStart = System.nanoTime();
+		settle();
+		float loadSeconds = (System.nanoTime() - loadStart) / 1e9f;
+		System.out.printf("Loaded the start area in %.2f s%n", loadSeconds);
+		
+		simulation = new Simulation(world, player, Voxels.TICKS_PER_SECOND, Voxels.speed);
+		picker = new BlockPicker(world, Voxels.REACH);
+		
+		long start = System.nanoTime();
+		metrics = new FrameMetrics(start, Voxels.METRICS_SNAPSHOT_SECONDS);
+		chunksMeshed = 0;
+		sleepNanos = 0;
+		
+		replay();
+		
+		float seconds = (System.nanoTime() - start) / 1e9f;
+		float busySeconds = seconds - sleepNanos / 1e9f;
+		long ticks = script.getLength();
+		
+		// Report how fast the engine went
+		System.out.printf("Replayed %d ticks in %.2f s: %.0f ticks/second, %.0f ticks/second not counting %.2f s waiting for workers%n",
+				ticks, seconds, ticks / seconds, ticks / busySeconds, sleepNanos / 1e9f);
+		System.out.printf("Generated %d chunks at %.1f chunks/second per core, meshed %d on this thread, made %d edits%n",
+				workers.getGeneratedChunks(), workers.getChunksPerCoreSecond(), chunksMeshed, edits);
+		
+		Histogram tickTimes = metrics.getFrameTimes();
+		System.out.printf("Tick times over the last %d ticks: %.3f ms median, %.3f ms 99th percentile, %.3f ms max%n",
+				tickTimes.getCount(), tickTimes.getPercentile(0.5) / 1e3f, tickTimes.getPercentile(0.99) / 1e3f, tickTimes.getMax() / 1e3f);
+		
+		// Report how compactly the loaded Chunks are stored
+		System.out.printf("%d chunks loaded, storing their blocks and light in %d KB (%d of %d sections uniform)%n", world.getLoadedChunks(),
+				world.getStorageBytes() / 1024, world.getUniformSections(), world.getLoadedChunks() * Chunk.SECTION_COUNT);
+		
+		// Report how many vertices each level of detail's meshes hold
+		for (int lod = 0; lod <= World.MAX_LOD; ++lod) {
+			int chunks = world.getChunksAtLod(lod);
+			long vertices = world.getVerticesAtLod(lod);
+			
+			System.out.printf("Level of detail %d (%dx): %d chunks, %d vertices (%.0f per chunk)%n", lod, 1 << lod, chunks, vertices,
+					chunks == 0 ? 0f : (float)vertices / chunks);
+		}
+		
+		// The final position shows whether two replays went the same way
+		Vec3f position = player.getPosition();
+		System.out.printf("Ended at (%s, %s, %s)%n", position.x, position.y, position.z);
+		
+		if (Voxels.METRICS_FILE != null) {
+			metrics.write(Paths.get(Voxels.METRICS_FILE), System.nanoTime());
+		}
+		
+		world.delete();
+	}
+	
+	private void replay() {
+		int next = 0;
+		int input = 0;
+		
+		for (long tick = 0; tick < script.getLength(); ++tick) {
+			long tickStart = System.nanoTime();
+			meshNanos = 0;
+			uploadNanos = 0;
+			
+			// Apply the events of this tick
+			for (; next < script.getEvents().size() && script.getEvents().get(next).tick == tick; ++next) {
+				InputScript.Event event = script.getEvents().get(next);
+				
+				switch (event.action) {
+				case Look:
+					player.getRotation().set(event.pitch, event.yaw, 0);
+					break;
+				case Move:
+					input = event.input;
+					break;
+				case Break:
+					edits += picker.breakBlock(player, player.getPosition()) ? 1 : 0;
+					break;
+				case Place:
+					edits += picker.placeBlock(player, player.getPosition(), Voxels.PLACED_BLOCK) ? 1 : 0;
+					break;
+				case End:
+					break;
+				}
+			}
+			
+			long picked = System.nanoTime();
+			
+			// Move the Player through the Blocks as edited
+			simulation.publishBlocks(player.getPosition());
+			simulation.setInput(input, player.getRotation().y);
+			simulation.tick();
+			
+			// Stream and rebuild the Chunks around the Player's new position
+			long sleptBefore = sleepNanos;
+			long meshedBefore = chunksMeshed;
+			settle();
+			long settled = System.nanoTime();
+			
+			// Meshing and uploading happen inside settle; the sleeping counts towards the tick but no phase
+			metrics.add(FrameMetrics.Phase.Raycast, picked - tickStart);
+			metrics.add(FrameMetrics.Phase.Update, settled - picked - (sleepNanos - sleptBefore) - meshNanos - uploadNanos);
+			metrics.add(FrameMetrics.Phase.Mesh, meshNanos);
+			metrics.add(FrameMetrics.Phase.Upload, uploadNanos);
+			metrics.endFrame(settled, 0, 0, (int)(chunksMeshed - meshedBefore));
+		}
+	}
+	
+	// Update the World until every Chunk around the Player is built and uploaded
+	private void settle() {
+		update();
+		
+		while (!world.isFullyLoaded()) {
+			long sleepStart = System.nanoTime();
+			LockSupport.parkNanos(WAIT_NANOS);
+			sleepNanos += System.nanoTime() - sleepStart;
+			
+			update();
+		}
+	}
+	
+	private void update() {
+		world.update(player.getPosition());
+		
+		meshNanos += world.getMeshNanos();
+		uploadNanos += world.getUploadNanos();
+		chunksMeshed += world.getChunksMeshed();
+	}
+}
@@ -0,0 +1,213 @@
+package com.voxels;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.voxels.math.Vec3f;
+
+// Input for the Simulation and Block edits by tick, recorded from play or written by hand, so a
+// session can be replayed the same way every time. As text, one event per line:
+//   <tick> look <pitch> <yaw>
+//   <tick> move [forward] [backward] [left] [right] [up] [down]   (no keys to stand still)
+//   <tick> break
+//   <tick> place
+//   <tick> end
+// Lines starting with # are comments. Events must be in tick order.
+class InputScript {
+	enum Action {
+		Look,
+		Move,
+		Break,
+		Place,
+		End,
+	}
+	
+	static class Event {
+		final long tick;
+		final Action action;
+		// Simulation input flags, for Move
+		final int input;
+		// Rotation in degrees, for Look
+		final float pitch;
+		final float yaw;
+		
+		Event(long tick, Action action, int input, float pitch, float yaw) {
+			this.tick = tick;
+			this.action = action;
+			this.input = input;
+			this.pitch = pitch;
+			this.yaw = yaw;
+		}
+	}
+	
+	// Names of the Simulation input flags, by bit
+	private static final String[] KEYS = { "forward", "backward", "left", "right", "up", "down" };
+	
+	private List<Event> events = new ArrayList<Event>();
+	// The last input and rotation recorded, so recording only adds changes
+	private int recordedInput = 0;
+	private float recordedPitch = 0;
+	private float recordedYaw = 0;
+	
+	List<Event> getEvents() {
+		return events;
+	}
+	
+	// Get the number of ticks the script runs for: to its end event, or just past its last event
+	long getLength() {
+		if (events.isEmpty()) {
+			return 0;
+		}
+		
+		Event last = events.get(events.size() - 1);
+		
+		return last.action == Action.End ? last.tick : last.tick + 1;
+	}
+	
+	void addLook(long tick, float pitch, float yaw) {
+		add(new Event(tick, Action.Look, 0, pitch, yaw));
+	}
+	
+	void addMove(long tick, int input) {
+		add(new Event(tick, Action.Move, input, 0, 0));
+	}
+	
+	void addBreak(long tick) {
+		add(new Event(tick, Action.Break, 0, 0, 0));
+	}
+	
+	void addPlace(long tick) {
+		add(new Event(tick, Action.Place, 0, 0, 0));
+	}
+	
+	void addEnd(long tick) {
+		add(new Event(tick, Action.End, 0, 0, 0));
+	}
+	
+	private void add(Event event) {
+		if (!events.isEmpty() && event.tick < events.get(events.size() - 1).tick) {
+			throw new IllegalStateException("Events must be added in tick order");
+		}
+		
+		events.add(event);
+	}
+	
+	// Record the input of a frame, adding events for what changed since the last one
+	void record(long tick, int input, Vec3f rotation) {
+		if (rotation.x != recordedPitch || rotation.y != recordedYaw) {
+			addLook(tick, rotation.x, rotation.y);
+			recordedPitch = rotation.x;
+			recordedYaw = rotation.y;
+		}
+		
+		if (input != recordedInput) {
+			addMove(tick, input);
+			recordedInput = input;
+		}
+	}
+	
+	static InputScript read(Path path) throws IOException {
+		InputScript script = new InputScript();
+		
+		try (BufferedReader in = Files.newBufferedReader(path)) {
+			int lineNumber = 0;
+			String line;
+			
+			while ((line = in.readLine()) != null) {
+				++lineNumber;
+				line = line.trim();
+				
+				// Skip blank lines and comments
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				
+				try {
+					script.parse(line.split("\\s+"));
+				} catch (IllegalArgumentException | IllegalStateException e) {
+					throw new IOException(path + " line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		
+		return script;
+	}
+	
+	private void parse(String[] words) {
+		if (words.length < 2) {
+			throw new IllegalArgumentException("Expected a tick and an action");
+		}
+		
+		long tick = Long.parseLong(words[0]);
+		
+		switch (words[1]) {
+		case "look":
+			if (words.length != 4) {
+				throw new IllegalArgumentException("Expected look <pitch> <yaw>");
+			}
+			addLook(tick, Float.parseFloat(words[2]), Float.parseFloat(words[3]));
+			break;
+		case "move":
+			int input = 0;
+			for (int word = 2; word < words.length; ++word) {
+				input |= keyFlag(words[word]);
+			}
+			addMove(tick, input);
+			break;
+		case "break":
+			addBreak(tick);
+			break;
+		case "place":
+			addPlace(tick);
+			break;
+		case "end":
+			addEnd(tick);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown action " + words[1]);
+		}
+	}
+	
+	private static int keyFlag(String key) {
+		for (int bit = 0; bit < KEYS.length; ++bit) {
+			if (KEYS[bit].equals(key)) {
+				return 1 << bit;
+			}
+		}
+		
+		throw new IllegalArgumentException("Unknown key " + key);
+	}
+	
+	void write(Path path) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			for (Event event : events) {
+				out.write(Long.toString(event.tick));
+				
+				switch (event.action) {
+				case Look:
+					out.write(" look " + event.pitch + " " + event.yaw);
+					break;
+				case Move:
+					out.write(" move");
+					for (int bit = 0; bit < KEYS.length; ++bit) {
+						if ((event.input & (1 << bit)) != 0) {
+							out.write(" " + KEYS[bit]);
+						}
+					}
+					break;
+				default:
+					out.write(" " + event.action.name().toLowerCase(Locale.ROOT));
+					break;
+				}
+				
+				out.newLine();
+			}
+		}
+	}
+}
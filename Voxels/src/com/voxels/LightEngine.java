@@ -0,0 +1,423 @@
+package com.voxels;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+import com.voxels.terrain.TerrainGenerator;
+
+// Spreads sky and block light through the loaded Chunks breadth first, one level less per Block, and
+// keeps it up to date as Chunks arrive and Blocks change by only undoing and redoing the light that
+// changed. Sky light is full strength above each column's heightmap, so the sky is open above the
+// highest loaded Chunk. Unloading a Chunk leaves the light of the others as it was.
+// Render thread only; the Simulation reads a BlockSnapshot instead.
+class LightEngine {
+	static final int MAX_LIGHT = 15;
+	// Where each kind of light is kept in a Block's light byte
+	static final int SKY_SHIFT = 4;
+	static final int BLOCK_SHIFT = 0;
+	
+	private static final Side[] SIDES = Side.values();
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+	private static final int SHIFT = Integer.numberOfTrailingZeros(SIZE);
+	private static final int MASK = SIZE - 1;
+	
+	// Blocks whose light is spreading, and Blocks whose old light is being taken back
+	private LightQueue additions = new LightQueue();
+	private LightQueue removals = new LightQueue();
+	private World world = null;
+	// Scratch space for the light of a section and the heights of a column
+	private byte[] light = new byte[Chunk.SECTION_VOLUME];
+	private int[] heights = new int[Chunk.FACE_AREA];
+	// The Block found by findNeighbour (neighbourChunk is null if its Chunk isn't loaded)
+	private Chunk neighbourChunk = null;
+	private int neighbourIndex = 0;
+	
+	LightEngine(World world) {
+		this.world = world;
+	}
+	
+	// Light a newly generated Chunk on its own, with full sky light above the generated surface and its own
+	// highest Block, so the mesh built on the worker is usually right already (any thread)
+	static void lightGenerated(Chunk chunk, TerrainGenerator generator) {
+		int[] heights = new int[Chunk.FACE_AREA];
+		int bottom = chunk.getY() * SIZE;
+		
+		for (int z = 0; z < SIZE; ++z) {
+			for (int x = 0; x < SIZE; ++x) {
+				int surface = generator.getSurfaceHeight(chunk.getX() * SIZE + x, chunk.getZ() * SIZE + z);
+				int highest = chunk.getHighestBlock(x, z, SIZE - 1);
+				
+				heights[x + z * SIZE] = highest < 0 ? surface : Math.max(surface, bottom + highest);
+			}
+		}
+		
+		seed(chunk, heights, new byte[Chunk.SECTION_VOLUME]);
+	}
+	
+	// Set the light of every Block in the Chunk to full sky light above the heights (world y at each x + z * 16)
+	// and none below, plus whatever its BlockType gives off. Returns the sections whose light changed.
+	private static int seed(Chunk chunk, int[] heights, byte[] light) {
+		int bottom = chunk.getY() * SIZE;
+		int changed = 0;
+		
+		int lowest = Integer.MAX_VALUE;
+		int highest = Integer.MIN_VALUE;
+		for (int height : heights) {
+			lowest = Math.min(lowest, height);
+			highest = Math.max(highest, height);
+		}
+		
+		for (int section = 0; section < Chunk.SECTION_COUNT; ++section) {
+			int sectionBottom = bottom + section * Chunk.SECTION_HEIGHT;
+			
+			// A section of one BlockType giving off no light, all above or all below the heights, is lit evenly
+			if (chunk.isSectionUniform(section) && chunk.getUniformBlock(section).emission == 0
+					&& (sectionBottom > highest || sectionBottom + Chunk.SECTION_HEIGHT - 1 <= lowest)) {
+				if (chunk.fillSectionLight(section, sectionBottom > highest ? MAX_LIGHT << SKY_SHIFT : 0)) {
+					changed |= 1 << section;
+				}
+				continue;
+			}
+			
+			for (int z = 0; z < SIZE; ++z) {
+				for (int y = section * Chunk.SECTION_HEIGHT; y < (section + 1) * Chunk.SECTION_HEIGHT; ++y) {
+					for (int x = 0; x < SIZE; ++x) {
+						int index = Chunk.index(x, y, z);
+						int sky = bottom + y > heights[x + z * SIZE] ? MAX_LIGHT : 0;
+						
+						light[Chunk.cellIndex(index)] = (byte)(sky << SKY_SHIFT | chunk.getBlock(index).emission << BLOCK_SHIFT);
+					}
+				}
+			}
+			
+			if (chunk.setSectionLight(section, light)) {
+				changed |= 1 << section;
+			}
+		}
+		
+		return changed;
+	}
+	
+	// Light a Chunk that just joined its column: its own Blocks from the column's heightmap, the sky it now
+	// covers in the Chunks below (their heights were previousHeights), and the light crossing its sides
+	void addChunk(Chunk chunk, ChunkColumn column, int[] previousHeights) {
+		for (int faceIndex = 0; faceIndex < Chunk.FACE_AREA; ++faceIndex) {
+			heights[faceIndex] = column.getHeight(faceIndex & MASK, faceIndex / SIZE);
+		}
+		
+		// Faces lit differently than on the worker need meshing again, as do the faces above and below them
+		int changed = seed(chunk, heights, light);
+		chunk.markDirty((changed | changed << 1 | changed >> 1) & Chunk.ALL_SECTIONS);
+		
+		// Take the sky away from the Blocks below that the Chunk now covers
+		int bottom = chunk.getY() * SIZE;
+		int lowest = column.getLowestChunk() * SIZE;
+		for (int faceIndex = 0; faceIndex < Chunk.FACE_AREA; ++faceIndex) {
+			int top = Math.min(heights[faceIndex], bottom - 1);
+			int end = Math.max(previousHeights[faceIndex] + 1, lowest);
+			
+			for (int y = top; y >= end; --y) {
+				Chunk below = column.getChunk(y >> SHIFT);
+				
+				if (below != null) {
+					remove(below, Chunk.index(faceIndex & MASK, y & MASK, faceIndex / SIZE), SKY_SHIFT);
+				}
+			}
+		}
+		
+		spread(SKY_SHIFT);
+		
+		// Spread both kinds of light from the Chunk into its neighbours and from them into it
+		for (int shift = BLOCK_SHIFT; shift <= SKY_SHIFT; shift += SKY_SHIFT - BLOCK_SHIFT) {
+			queueSpreading(chunk, shift);
+			
+			for (Side side : SIDES) {
+				Chunk neighbour = world.getChunk(chunk.getX() + side.dx, chunk.getY() + side.dy, chunk.getZ() + side.dz);
+				
+				if (neighbour != null) {
+					queueSpreading(chunk, neighbour, side, shift);
+				}
+			}
+			
+			spread(shift);
+		}
+	}
+	
+	// Queue the Blocks of the Chunk that can light a darker Block next to them inside it
+	private void queueSpreading(Chunk chunk, int shift) {
+		for (int section = 0; section < Chunk.SECTION_COUNT; ++section) {
+			int uniform = chunk.getUniformLight(section);
+			
+			// Light can't spread within an evenly lit section, or into the sections around it lit the same
+			if (uniform >= 0 && (section == 0 || chunk.getUniformLight(section - 1) == uniform)
+					&& (section == Chunk.SECTION_COUNT - 1 || chunk.getUniformLight(section + 1) == uniform)) {
+				continue;
+			}
+			
+			for (int z = 0; z < SIZE; ++z) {
+				for (int y = section * Chunk.SECTION_HEIGHT; y < (section + 1) * Chunk.SECTION_HEIGHT; ++y) {
+					for (int x = 0; x < SIZE; ++x) {
+						int index = Chunk.index(x, y, z);
+						int level = getLevel(chunk, index, shift);
+						
+						if (level <= 1) {
+							continue;
+						}
+						
+						for (Side side : SIDES) {
+							int next = Chunk.neighbourIndex(index, side);
+							
+							if (next >= 0 && getLevel(chunk, next, shift) < level - 1 && chunk.getBlock(next).isTransparent()) {
+								additions.add(chunk, index, 0);
+								break;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	// Queue the Blocks on either side of where the Chunk meets its neighbour that can light the darker Block across
+	private void queueSpreading(Chunk chunk, Chunk neighbour, Side side, int shift) {
+		int ownLayer = side.isPositive() ? SIZE - 1 : 0;
+		int neighbourLayer = SIZE - 1 - ownLayer;
+		
+		for (int faceIndex = 0; faceIndex < Chunk.FACE_AREA; ++faceIndex) {
+			int own = Chunk.layerIndex(side, faceIndex, ownLayer);
+			int other = Chunk.layerIndex(side, faceIndex, neighbourLayer);
+			int ownLevel = getLevel(chunk, own, shift);
+			int otherLevel = getLevel(neighbour, other, shift);
+			
+			if (otherLevel - 1 > ownLevel && chunk.getBlock(own).isTransparent()) {
+				additions.add(neighbour, other, 0);
+			} else if (ownLevel - 1 > otherLevel && neighbour.getBlock(other).isTransparent()) {
+				additions.add(chunk, own, 0);
+			}
+		}
+	}
+	
+	// Update the light around the Block at index after it changed, where the column's height there was previousHeight
+	void blockChanged(Chunk chunk, int index, ChunkColumn column, int previousHeight) {
+		int x = Chunk.indexX(index);
+		int y = chunk.getY() * SIZE + Chunk.indexY(index);
+		int z = Chunk.indexZ(index);
+		int height = column.getHeight(x, z);
+		BlockType type = chunk.getBlock(index);
+		
+		for (int shift = BLOCK_SHIFT; shift <= SKY_SHIFT; shift += SKY_SHIFT - BLOCK_SHIFT) {
+			// Take back the Block's old light, and give it its own
+			remove(chunk, index, shift);
+			
+			int source = shift == SKY_SHIFT ? (y > height ? MAX_LIGHT : 0) : type.emission;
+			if (source > 0) {
+				setLevel(chunk, index, shift, source);
+				additions.add(chunk, index, 0);
+			}
+			
+			// Light can now pass through it from its neighbours
+			if (type.isTransparent()) {
+				for (Side side : SIDES) {
+					if (findNeighbour(chunk, index, side)) {
+						additions.add(neighbourChunk, neighbourIndex, 0);
+					}
+				}
+			}
+			
+			if (shift == SKY_SHIFT) {
+				// Only the loaded Chunks have Blocks to light
+				int floor = column.getLowestChunk() * SIZE - 1;
+				
+				// A Block placed above the heightmap covers the sky of the Blocks down to the old height
+				for (int below = height - 1; below > Math.max(previousHeight, floor); --below) {
+					Chunk belowChunk = column.getChunk(below >> SHIFT);
+					
+					if (belowChunk != null) {
+						remove(belowChunk, Chunk.index(x, below & MASK, z), SKY_SHIFT);
+					}
+				}
+				
+				// Taking away the highest Block opens the sky down to the new height
+				for (int below = Math.min(y - 1, previousHeight); below > Math.max(height, floor); --below) {
+					Chunk belowChunk = column.getChunk(below >> SHIFT);
+					
+					if (belowChunk != null) {
+						int belowIndex = Chunk.index(x, below & MASK, z);
+						setLevel(belowChunk, belowIndex, SKY_SHIFT, MAX_LIGHT);
+						additions.add(belowChunk, belowIndex, 0);
+					}
+				}
+			}
+			
+			spread(shift);
+		}
+	}
+	
+	// Darken a Block, queueing its old light to be taken back from the Blocks it lit
+	private void remove(Chunk chunk, int index, int shift) {
+		int level = getLevel(chunk, index, shift);
+		
+		if (level > 0) {
+			setLevel(chunk, index, shift, 0);
+			removals.add(chunk, index, level);
+		}
+	}
+	
+	// Take back the queued light, then spread what is left
+	private void spread(int shift) {
+		while (!removals.isEmpty()) {
+			Chunk chunk = removals.peekChunk();
+			int index = removals.peekIndex();
+			int level = removals.peekLevel();
+			removals.pop();
+			
+			for (Side side : SIDES) {
+				if (!findNeighbour(chunk, index, side)) {
+					continue;
+				}
+				
+				int neighbourLevel = getLevel(neighbourChunk, neighbourIndex, shift);
+				
+				if (neighbourLevel == 0) {
+					continue;
+				}
+				
+				if (neighbourLevel < level && !isEmitter(neighbourChunk, neighbourIndex, shift, neighbourLevel)) {
+					// Lit by the removed light, so take it back from there too
+					setLevel(neighbourChunk, neighbourIndex, shift, 0);
+					removals.add(neighbourChunk, neighbourIndex, neighbourLevel);
+				} else {
+					// Lit from somewhere else, so spread that back into the darkened Blocks
+					additions.add(neighbourChunk, neighbourIndex, 0);
+				}
+			}
+		}
+		
+		while (!additions.isEmpty()) {
+			Chunk chunk = additions.peekChunk();
+			int index = additions.peekIndex();
+			additions.pop();
+			
+			int level = getLevel(chunk, index, shift) - 1;
+			
+			if (level <= 0) {
+				continue;
+			}
+			
+			for (Side side : SIDES) {
+				if (!findNeighbour(chunk, index, side) || !neighbourChunk.getBlock(neighbourIndex).isTransparent()) {
+					continue;
+				}
+				
+				if (getLevel(neighbourChunk, neighbourIndex, shift) < level) {
+					setLevel(neighbourChunk, neighbourIndex, shift, level);
+					additions.add(neighbourChunk, neighbourIndex, 0);
+				}
+			}
+		}
+	}
+	
+	// Whether the Block gives off this level of block light itself (open sky is always the brightest
+	// light around, so is never taken back by the light next to it)
+	private static boolean isEmitter(Chunk chunk, int index, int shift, int level) {
+		return shift == BLOCK_SHIFT && chunk.getBlock(index).emission == level;
+	}
+	
+	// Find the Block next to index on the given side, in whichever loaded Chunk it is in
+	private boolean findNeighbour(Chunk chunk, int index, Side side) {
+		neighbourIndex = Chunk.neighbourIndex(index, side);
+		neighbourChunk = chunk;
+		
+		if (neighbourIndex < 0) {
+			neighbourChunk = world.getChunk(chunk.getX() + side.dx, chunk.getY() + side.dy, chunk.getZ() + side.dz);
+			neighbourIndex = Chunk.index((Chunk.indexX(index) + side.dx) & MASK, (Chunk.indexY(index) + side.dy) & MASK,
+					(Chunk.indexZ(index) + side.dz) & MASK);
+		}
+		
+		return neighbourChunk != null;
+	}
+	
+	private static int getLevel(Chunk chunk, int index, int shift) {
+		return (chunk.getLight(index) >> shift) & MAX_LIGHT;
+	}
+	
+	private void setLevel(Chunk chunk, int index, int shift, int level) {
+		int light = chunk.getLight(index) & ~(MAX_LIGHT << shift) | level << shift;
+		
+		if (chunk.setLight(index, light)) {
+			lightChanged(chunk, index);
+		}
+	}
+	
+	// Mark the faces that look into the Block at index to be meshed again
+	private void lightChanged(Chunk chunk, int index) {
+		chunk.markDirty(Chunk.getSectionsAround(Chunk.indexY(index)));
+		
+		// Faces across the edges of the Chunk (found without findNeighbour, whose result the caller may still be using)
+		for (Side side : SIDES) {
+			if (Chunk.neighbourIndex(index, side) >= 0) {
+				continue;
+			}
+			
+			Chunk neighbour = world.getChunk(chunk.getX() + side.dx, chunk.getY() + side.dy, chunk.getZ() + side.dz);
+			
+			if (neighbour != null) {
+				neighbour.markDirty(1 << (((Chunk.indexY(index) + side.dy) & MASK) / Chunk.SECTION_HEIGHT));
+			}
+		}
+	}
+	
+	// Growing ring of Blocks to visit, as Chunk, index and light level
+	private static class LightQueue {
+		private Chunk[] chunks = new Chunk[1024];
+		private int[] cells = new int[1024];
+		private int head = 0;
+		private int size = 0;
+		
+		boolean isEmpty() {
+			return size == 0;
+		}
+		
+		void add(Chunk chunk, int index, int level) {
+			if (size == chunks.length) {
+				grow();
+			}
+			
+			int slot = (head + size++) & (chunks.length - 1);
+			chunks[slot] = chunk;
+			cells[slot] = index | level << 16;
+		}
+		
+		Chunk peekChunk() {
+			return chunks[head];
+		}
+		
+		int peekIndex() {
+			return cells[head] & 0xFFFF;
+		}
+		
+		int peekLevel() {
+			return cells[head] >>> 16;
+		}
+		
+		void pop() {
+			chunks[head] = null;
+			head = (head + 1) & (chunks.length - 1);
+			--size;
+		}
+		
+		private void grow() {
+			// Unwrap the ring into arrays twice the size
+			Chunk[] grownChunks = new Chunk[chunks.length * 2];
+			int[] grownCells = new int[cells.length * 2];
+			
+			for (int offset = 0; offset < size; ++offset) {
+				grownChunks[offset] = chunks[(head + offset) & (chunks.length - 1)];
+				grownCells[offset] = cells[(head + offset) & (cells.length - 1)];
+			}
+			
+			chunks = grownChunks;
+			cells = grownCells;
+			head = 0;
+		}
+	}
+}
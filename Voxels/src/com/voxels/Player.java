@@ -4,6 +4,10 @@ import com.voxels.math.Vec3f;
 
 public class Player {
 	private float height = Block.DEFAULT_SIZE * 2;
+	private float width = Block.DEFAULT_SIZE * 0.6f;
+	// Whether the last move was stopped by the ground or a ceiling
+	private boolean grounded = false;
+	private boolean touchingCeiling = false;
 	private Vec3f position = null;
 	private Vec3f rotation = null;
 	
@@ -24,6 +28,23 @@ public class Player {
 		return height;
 	}
 	
+	public float getWidth() {
+		return width;
+	}
+	
+	public boolean isGrounded() {
+		return grounded;
+	}
+	
+	public boolean isTouchingCeiling() {
+		return touchingCeiling;
+	}
+	
+	void setContacts(boolean grounded, boolean touchingCeiling) {
+		this.grounded = grounded;
+		this.touchingCeiling = touchingCeiling;
+	}
+	
 	Vec3f getPosition() {
 		return position;
 	}
@@ -0,0 +1,17 @@
+package com.voxels;
+
+import com.voxels.math.Vec3f;
+
+// Where the Player was before and after a tick, for frames to interpolate between
+class PlayerSnapshot {
+	Vec3f previousPosition = new Vec3f();
+	Vec3f position = new Vec3f();
+	// When the tick ended, in System.nanoTime
+	long time = 0;
+	
+	void set(PlayerSnapshot other) {
+		previousPosition.set(other.previousPosition);
+		position.set(other.position);
+		time = other.time;
+	}
+}
@@ -0,0 +1,74 @@
+package com.voxels;
+
+import com.voxels.Block.BlockType;
+
+// Where a ray cast by a VoxelRaycaster hit the World. Reused between casts, so it doesn't allocate.
+public class RaycastHit {
+	private BlockType type = null;
+	// World Block coordinates of the hit Block
+	private int x = 0;
+	private int y = 0;
+	private int z = 0;
+	// Direction (in world Block coordinates) of the face the ray entered through, zero if it started inside the Block
+	private int normalX = 0;
+	private int normalY = 0;
+	private int normalZ = 0;
+	// Distance along the ray to the face, in Player space units
+	private float distance = 0;
+	
+	void set(BlockType type, int x, int y, int z, int normalX, int normalY, int normalZ, float distance) {
+		this.type = type;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.normalX = normalX;
+		this.normalY = normalY;
+		this.normalZ = normalZ;
+		this.distance = distance;
+	}
+	
+	public BlockType getType() {
+		return type;
+	}
+	
+	public int getX() {
+		return x;
+	}
+	
+	public int getY() {
+		return y;
+	}
+	
+	public int getZ() {
+		return z;
+	}
+	
+	public int getNormalX() {
+		return normalX;
+	}
+	
+	public int getNormalY() {
+		return normalY;
+	}
+	
+	public int getNormalZ() {
+		return normalZ;
+	}
+	
+	// Get the coordinates of the Block in front of the hit face, where a new Block would be placed
+	public int getAdjacentX() {
+		return x + normalX;
+	}
+	
+	public int getAdjacentY() {
+		return y + normalY;
+	}
+	
+	public int getAdjacentZ() {
+		return z + normalZ;
+	}
+	
+	public float getDistance() {
+		return distance;
+	}
+}
@@ -0,0 +1,189 @@
+package com.voxels;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.voxels.math.Vec3f;
+
+// Moves the Player in fixed ticks from the latest input, so movement speed and simulation cost don't
+// depend on the frame rate. Runs on the render thread through update, or on its own thread after start.
+// Each tick is written to a back snapshot and swapped to the front, so frames always read a whole tick.
+// The Blocks it moves through come the other way: the render thread copies those around the Player into a
+// back snapshot after changing the World and swaps it to the front, so ticks never read the World itself.
+class Simulation {
+	// Movement input flags
+	static final int FORWARD = 1;
+	static final int BACKWARD = 2;
+	static final int LEFT = 4;
+	static final int RIGHT = 8;
+	static final int UP = 16;
+	static final int DOWN = 32;
+	
+	private World world = null;
+	private Player player = null;
+	private BoxCollider collider = null;
+	private FixedTimestep timestep = null;
+	// Distance moved per tick
+	private float speed = 0;
+	private Vec3f deltaPosition = new Vec3f();
+	// Latest input from the render thread
+	private volatile int input = 0;
+	private volatile float yaw = 0;
+	private PlayerSnapshot back = new PlayerSnapshot();
+	private PlayerSnapshot front = new PlayerSnapshot();
+	// Blocks published by the render thread, and the copy the ticks read
+	private BlockSnapshot backBlocks = new BlockSnapshot();
+	private BlockSnapshot frontBlocks = new BlockSnapshot();
+	private BlockSnapshot blocks = new BlockSnapshot();
+	private boolean blocksPublished = false;
+	private volatile long ticks = 0;
+	private volatile boolean running = false;
+	private Thread thread = null;
+	
+	Simulation(World world, Player player, int ticksPerSecond, float speed) {
+		this.world = world;
+		this.player = player;
+		this.speed = speed;
+		blocks.fill(world, player.getPosition());
+		collider = new BoxCollider(blocks);
+		timestep = new FixedTimestep(ticksPerSecond, System.nanoTime());
+		
+		// Start both snapshots standing still at the Player's position
+		back.previousPosition.set(player.getPosition());
+		back.position.set(player.getPosition());
+		back.time = timestep.getSimulatedTime();
+		front.set(back);
+	}
+	
+	void setInput(int input, float yaw) {
+		this.yaw = yaw;
+		this.input = input;
+	}
+	
+	long getTicks() {
+		return ticks;
+	}
+	
+	long getTickNanos() {
+		return timestep.getTickNanos();
+	}
+	
+	// Copy the latest finished tick
+	synchronized void getSnapshot(PlayerSnapshot snapshot) {
+		snapshot.set(front);
+	}
+	
+	// Copy the Blocks around position (in Player space) for the next tick to move through. Call on the
+	// thread that changes the World, after changing it.
+	void publishBlocks(Vec3f position) {
+		backBlocks.fill(world, position);
+		
+		synchronized (this) {
+			BlockSnapshot published = backBlocks;
+			backBlocks = frontBlocks;
+			frontBlocks = published;
+			blocksPublished = true;
+		}
+	}
+	
+	// Run every tick due by now
+	void update(long now) {
+		while (timestep.step(now)) {
+			tick();
+		}
+	}
+	
+	// Run the simulation on its own thread until stop
+	void start() {
+		running = true;
+		
+		thread = new Thread(this::run, "Simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	void stop() {
+		running = false;
+		
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			thread = null;
+		}
+	}
+	
+	private void run() {
+		while (running) {
+			update(System.nanoTime());
+			
+			// Sleep until the next tick is due
+			LockSupport.parkNanos(timestep.getNanosUntilNextTick(System.nanoTime()));
+		}
+	}
+	
+	// Run one tick now, whatever the time (for replaying input tick by tick)
+	void tick() {
+		int input = this.input;
+		double angle = yaw / 180 * Math.PI;
+		float cos = (float)(speed * Math.cos(angle));
+		float sin = (float)(speed * Math.sin(angle));
+		
+		// Walk relative to where the Player is facing
+		deltaPosition.set(0, 0, 0);
+		
+		if ((input & FORWARD) != 0) {
+			deltaPosition.z += cos;
+			deltaPosition.x -= sin;
+		}
+		
+		if ((input & BACKWARD) != 0) {
+			deltaPosition.z -= cos;
+			deltaPosition.x += sin;
+		}
+		
+		if ((input & LEFT) != 0) {
+			deltaPosition.z += sin;
+			deltaPosition.x += cos;
+		}
+		
+		if ((input & RIGHT) != 0) {
+			deltaPosition.z -= sin;
+			deltaPosition.x -= cos;
+		}
+		
+		if ((input & UP) != 0) {
+			deltaPosition.y += speed;
+		}
+		
+		if ((input & DOWN) != 0) {
+			deltaPosition.y -= speed;
+		}
+		
+		back.previousPosition.set(player.getPosition());
+		
+		// Take the latest Blocks, then move as far as they allow
+		synchronized (this) {
+			if (blocksPublished) {
+				blocks.set(frontBlocks);
+				blocksPublished = false;
+			}
+		}
+		
+		collider.move(player, deltaPosition);
+		
+		back.position.set(player.getPosition());
+		back.time = timestep.getSimulatedTime();
+		
+		// Publish the tick
+		synchronized (this) {
+			PlayerSnapshot published = back;
+			back = front;
+			front = published;
+		}
+		
+		++ticks;
+	}
+}
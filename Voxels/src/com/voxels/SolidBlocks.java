@@ -0,0 +1,6 @@
+package com.voxels;
+
+// Tells which Blocks stop movement, by world Block coordinates
+public interface SolidBlocks {
+	boolean isSolid(int x, int y, int z);
+}
@@ -0,0 +1,126 @@
+package com.voxels;
+
+import com.voxels.Block.BlockType;
+import com.voxels.math.Vec3f;
+
+// Casts rays through the World's Blocks with Amanatides-Woo grid traversal: the ray steps from
+// Block to Block across whichever face it reaches first, so it visits exactly the Blocks it crosses.
+// Blocks above the heightmap of their column are known to be Air without being looked up.
+public class VoxelRaycaster {
+	private static final int SHIFT = Integer.numberOfTrailingZeros(Chunk.CHUNK_SIZE);
+	private static final int MASK = Chunk.CHUNK_SIZE - 1;
+	
+	private World world = null;
+	
+	public VoxelRaycaster(World world) {
+		this.world = world;
+	}
+	
+	// Cast a ray from origin along direction (both in Player space) for up to maxDistance units.
+	// Returns whether a solid Block was hit, filling in hit if so. Stops at Chunks that are not loaded.
+	public boolean cast(Vec3f origin, Vec3f direction, float maxDistance, RaycastHit hit) {
+		float length = direction.length();
+		
+		if (length == 0) {
+			return false;
+		}
+		
+		// Convert the ray to world Block coordinates, measuring t in Player space units
+		float originX = -origin.x / Block.DEFAULT_SIZE;
+		float originY = origin.y / Block.DEFAULT_SIZE;
+		float originZ = -origin.z / Block.DEFAULT_SIZE;
+		float directionX = -direction.x / (length * Block.DEFAULT_SIZE);
+		float directionY = direction.y / (length * Block.DEFAULT_SIZE);
+		float directionZ = -direction.z / (length * Block.DEFAULT_SIZE);
+		
+		// Start in the Block containing the origin
+		int x = (int)Math.floor(originX);
+		int y = (int)Math.floor(originY);
+		int z = (int)Math.floor(originZ);
+		
+		int stepX = step(directionX);
+		int stepY = step(directionY);
+		int stepZ = step(directionZ);
+		
+		// Distance along the ray to cross one Block on each axis
+		float deltaX = stepX != 0 ? Math.abs(1 / directionX) : Float.POSITIVE_INFINITY;
+		float deltaY = stepY != 0 ? Math.abs(1 / directionY) : Float.POSITIVE_INFINITY;
+		float deltaZ = stepZ != 0 ? Math.abs(1 / directionZ) : Float.POSITIVE_INFINITY;
+		
+		// Distance along the ray to the next Block boundary on each axis
+		float nextX = boundary(originX, x, stepX, directionX);
+		float nextY = boundary(originY, y, stepY, directionY);
+		float nextZ = boundary(originZ, z, stepZ, directionZ);
+		
+		int normalX = 0;
+		int normalY = 0;
+		int normalZ = 0;
+		float distance = 0;
+		
+		// The column the ray is in, looked up again only when the ray leaves it
+		ChunkColumn column = null;
+		
+		while (distance <= maxDistance) {
+			if (column == null || column.getX() != x >> SHIFT || column.getZ() != z >> SHIFT) {
+				column = world.getColumn(x >> SHIFT, z >> SHIFT);
+			}
+			
+			Chunk chunk = column != null ? column.getChunk(y >> SHIFT) : null;
+			
+			// Nothing is known past the loaded Chunks
+			if (chunk == null) {
+				return false;
+			}
+			
+			BlockType type = y > column.getHeight(x & MASK, z & MASK) ? BlockType.Air : chunk.getBlock(x & MASK, y & MASK, z & MASK);
+			
+			if (type != BlockType.Air) {
+				hit.set(type, x, y, z, normalX, normalY, normalZ, distance);
+				
+				return true;
+			}
+			
+			// Step into the next Block through the nearest boundary
+			if (nextX <= nextY && nextX <= nextZ) {
+				x += stepX;
+				distance = nextX;
+				nextX += deltaX;
+				normalX = -stepX;
+				normalY = 0;
+				normalZ = 0;
+			} else if (nextY <= nextZ) {
+				y += stepY;
+				distance = nextY;
+				nextY += deltaY;
+				normalX = 0;
+				normalY = -stepY;
+				normalZ = 0;
+			} else {
+				z += stepZ;
+				distance = nextZ;
+				nextZ += deltaZ;
+				normalX = 0;
+				normalY = 0;
+				normalZ = -stepZ;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static int step(float direction) {
+		return direction > 0 ? 1 : (direction < 0 ? -1 : 0);
+	}
+	
+	private static float boundary(float origin, int block, int step, float direction) {
+		if (step > 0) {
+			return (block + 1 - origin) / direction;
+		}
+		
+		if (step < 0) {
+			return (block - origin) / direction;
+		}
+		
+		return Float.POSITIVE_INFINITY;
+	}
+}
@@ -5,8 +5,9 @@ import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
+import java.io.IOException;
 import java.nio.DoubleBuffer;
-import java.nio.FloatBuffer;
+import java.nio.file.Paths;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.glfw.GLFWErrorCallback;
@@ -14,24 +15,83 @@ import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
 
 import com.voxels.Block.BlockType;
+import com.voxels.graphics.AssetCache;
+import com.voxels.graphics.BlockAtlas;
+import com.voxels.graphics.ChunkMesh;
 import com.voxels.graphics.GraphicsRoutines;
-import org.lwjgl.opengl.GL11;
-
+import com.voxels.graphics.MetricsOverlay;
+import com.voxels.graphics.VertexBufferUploader;
+import com.voxels.math.Frustum;
+import com.voxels.math.Mat4f;
 import com.voxels.math.Vec3f;
+import com.voxels.metrics.FrameMetrics;
+import com.voxels.metrics.Histogram;
+import com.voxels.storage.RegionStore;
+import com.voxels.terrain.NoiseTerrainGenerator;
+import com.voxels.terrain.TerrainGenerator;
 
 public class Voxels {
 	private boolean mouseLocked = false;
 	private boolean[] keys = new boolean[65536];
-	private Chunk spawn = null;
+	private World world = null;
+	private ChunkWorkers workers = null;
+	private RegionStore store = null;
 	private long window = 0;
 	private Player player = null;
+	private BlockPicker picker = null;
+	private Simulation simulation = null;
+	private boolean placeHeld = false;
+	private long frames = 0;
+	// Totals of the per-frame culling counters
+	private long chunksTested = 0;
+	private long chunksDrawn = 0;
+	// Where each frame's time goes, drawn over the scene while showMetrics is set (toggled with F3)
+	private FrameMetrics metrics = null;
+	private MetricsOverlay overlay = null;
+	private boolean showMetrics = false;
+	// The input of this session, to replay headless later (null when not recording)
+	private InputScript recording = null;
+	
+	// Scratch space for the frame loop, so it doesn't allocate
+	private DoubleBuffer cursorX = BufferUtils.createDoubleBuffer(1);
+	private DoubleBuffer cursorY = BufferUtils.createDoubleBuffer(1);
+	private Mat4f view = new Mat4f();
+	private Mat4f projection = new Mat4f();
+	private Mat4f viewProjection = new Mat4f();
+	private Frustum frustum = new Frustum();
+	private PlayerSnapshot snapshot = new PlayerSnapshot();
+	// Where the camera is this frame, between the last two ticks
+	private Vec3f eyePosition = new Vec3f();
+	private Vec3f deltaRotation = new Vec3f();
 	
 	private static final int WIDTH = 800;
     private static final int HEIGHT = 600;
-    private static final int speed = 1;
+    static final int speed = 1;
+    static final int TICKS_PER_SECOND = 60;
+    private static final float FIELD_OF_VIEW = 80f;
+    private static final float NEAR_PLANE = 1f;
+    private static final float FAR_PLANE = 10000f;
+    // Run the simulation on its own thread instead of between frames
+    private static final boolean SIMULATION_THREAD = Boolean.getBoolean("voxels.simulationThread");
+    // Draw Blocks from a texture array with a layer per tile instead of the sprite sheet
+    private static final boolean TEXTURE_ARRAY = Boolean.getBoolean("voxels.textureArray");
+    // File to write the frame metrics to on exit (.json or .csv), or null to not write them
+    static final String METRICS_FILE = System.getProperty("voxels.metrics");
+    static final float METRICS_SNAPSHOT_SECONDS = 5;
+    // File to record the input to on exit, for --replay, or null to not record
+    private static final String RECORD_FILE = System.getProperty("voxels.record");
+    static final int VIEW_DISTANCE = Integer.getInteger("voxels.viewDistance", 8);
+    static final int VERTICAL_VIEW_DISTANCE = 2;
+    // Chunks further than this are drawn at half resolution, twice as far at a quarter, and so on (0 for full resolution everywhere)
+    static final int LOD_DISTANCE = Integer.getInteger("voxels.lodDistance", 8);
+    static final int CHUNK_UPLOADS_PER_UPDATE = 4;
+    static final int CHUNKS_IN_FLIGHT = 64;
+    static final long WORLD_SEED = 20180417L;
+    static final float REACH = 20;
+    static final BlockType PLACED_BLOCK = BlockType.Dirt;
 	
 	private Voxels() {
-		
+	
 	}
 	
 	private void run() {
@@ -45,6 +105,14 @@ public class Voxels {
 			// Start the game loop
 			loop();
 			
+			// Report how fast terrain was generated
+			System.out.printf("Generated %d chunks at %.1f chunks/second per core%n",
+					workers.getGeneratedChunks(), workers.getChunksPerCoreSecond());
+			
+			// Free the world's GPU resources and save it
+			world.delete();
+			store.close();
+			
 			// Free the callback routines for the window
 			glfwFreeCallbacks(window);
 			
@@ -117,7 +185,10 @@ public class Voxels {
 		glLoadIdentity();
 		
 		// Set up the projection matrix
-		GraphicsRoutines.gluPerspective(80f, (float)WIDTH/HEIGHT, 1f, 10000f);
+		GraphicsRoutines.gluPerspective(FIELD_OF_VIEW, (float)WIDTH/HEIGHT, NEAR_PLANE, FAR_PLANE);
+		
+		// Keep a copy of the projection for frustum culling
+		projection.setPerspective(FIELD_OF_VIEW, (float)WIDTH/HEIGHT, NEAR_PLANE, FAR_PLANE);
 		
 		// Change to model-view matrix mode
 		glMatrixMode(GL_MODELVIEW);
@@ -144,35 +215,47 @@ public class Voxels {
 	}
 	
 	private void init() throws Exception {
-		// Load all textures
-		GraphicsRoutines.loadTextures();
+		// Load all textures, reusing the decoded copies from earlier runs
+		GraphicsRoutines.loadTextures(new AssetCache(Paths.get("cache")), TEXTURE_ARRAY);
+		
+		// Load the shader used to draw Chunks, sampling whichever kind of texture was loaded
+		String fragmentShader = BlockAtlas.isLayered() ? "shaders/chunk_array.frag" : "shaders/chunk.frag";
+		Chunk.CHUNK_SHADER = GraphicsRoutines.loadShader("shaders/chunk.vert", fragmentShader, ChunkMesh.ATTRIBUTES);
+		
+		// Upload Chunk meshes into vertex buffers
+		Chunk.UPLOADER = new VertexBufferUploader();
 		
 		// Create a player
 		player = new Player();
 		
-		// Create a test (spawn) Chunk
-		spawn = new Chunk(new Vec3f(0, 0, 100));
-		
-		// Loop through the Blocks in the Chunk and create a test biome
-		for (int x = 0; x < Chunk.CHUNK_SIZE; ++x) {
-			for (int y = 0; y < Chunk.CHUNK_SIZE; ++y) {
-				for (int z = 0; z < Chunk.CHUNK_SIZE; ++z) {
-					if (x == 0) {
-						// Spawn Sand to left
-						spawn.setBlock(x, y, z, new Block(spawn, new Vec3f(spawn.getPosition().x - Block.DEFAULT_SIZE * x, spawn.getPosition().y + Block.DEFAULT_SIZE * y, spawn.getPosition().z - Block.DEFAULT_SIZE * z), BlockType.Sand));
-					} else if (y == Chunk.CHUNK_SIZE - 1) {
-						// Spawn Grass on top
-						spawn.setBlock(x, y, z, new Block(spawn, new Vec3f(spawn.getPosition().x - Block.DEFAULT_SIZE * x, spawn.getPosition().y + Block.DEFAULT_SIZE * y, spawn.getPosition().z - Block.DEFAULT_SIZE * z), BlockType.Grass));
-					} else {
-						// Spawn Dirt below
-						spawn.setBlock(x, y, z, new Block(spawn, new Vec3f(spawn.getPosition().x - Block.DEFAULT_SIZE * x, spawn.getPosition().y + Block.DEFAULT_SIZE * y, spawn.getPosition().z - Block.DEFAULT_SIZE * z), BlockType.Dirt));
-					}
-				}
-			}
-		}
+		// Generate the same terrain every run
+		TerrainGenerator generator = new NoiseTerrainGenerator(WORLD_SEED);
+		
+		// Start the player standing on the ground at the origin
+		spawn(player, generator);
+		
+		// Generate and mesh Chunks on every core but the one rendering
+		workers = new ChunkWorkers(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), CHUNKS_IN_FLIGHT);
+		
+		// Save the world between runs
+		store = new RegionStore(Paths.get("saves", "world"));
 		
-		// Update the Chunk (update display list)
-		spawn.update();
+		// Create the world around the player
+		world = new World(generator, store, VIEW_DISTANCE, VERTICAL_VIEW_DISTANCE, LOD_DISTANCE, workers, CHUNK_UPLOADS_PER_UPDATE);
+		world.update(player.getPosition());
+		
+		// Pick Blocks by casting rays through the world
+		picker = new BlockPicker(world, REACH);
+		
+		// Move the player in fixed ticks
+		simulation = new Simulation(world, player, TICKS_PER_SECOND, speed);
+		eyePosition.set(player.getPosition());
+	}
+	
+	// Stand the Player on the ground at the origin
+	static void spawn(Player player, TerrainGenerator generator) {
+		float groundHeight = (generator.getSurfaceHeight(0, 0) + 1) * Block.DEFAULT_SIZE;
+		player.setPosition(new Vec3f(0, groundHeight + player.getHeight(), 0));
 	}
 	
 	private void loop() {
@@ -182,26 +265,113 @@ public class Voxels {
 		// Set the clear color
 		glClearColor(0.0f, 1.0f, 1.0f, 0.0f);
 		
+		long startTime = System.nanoTime();
+		metrics = new FrameMetrics(startTime, METRICS_SNAPSHOT_SECONDS);
+		overlay = new MetricsOverlay(WIDTH, HEIGHT);
+		
+		if (RECORD_FILE != null) {
+			recording = new InputScript();
+		}
+		
+		// Run the simulation on its own thread if asked to
+		if (SIMULATION_THREAD) {
+			simulation.start();
+		}
+		
 		// Do a render loop until the window is to be closed
 		while (!glfwWindowShouldClose(window)) {
+			long frameStart = System.nanoTime();
+			
+			// Check for events and pass them to the simulation
+			update();
+			
+			long now = System.nanoTime();
+			
+			// Run the ticks that are due on this thread
+			if (!SIMULATION_THREAD) {
+				simulation.update(now);
+			}
+			
+			// Place the camera between the last two ticks
+			simulation.getSnapshot(snapshot);
+			float alpha = Math.min(1, (float)(now - snapshot.time) / simulation.getTickNanos());
+			eyePosition.lerp(snapshot.previousPosition, snapshot.position, alpha);
+			
+			// Break or place the block being looked at
+			long picking = System.nanoTime();
+			pick();
+			long picked = System.nanoTime();
+			
+			// Stream Chunks around the player and rebuild the changed ones, so edits show this frame
+			world.update(eyePosition);
+			
+			// Show the simulation the Blocks it moves through from now on
+			simulation.publishBlocks(snapshot.position);
+			
+			long updated = System.nanoTime();
+			
 			// Render the scene
 			render();
 			
-			// Check for events and act on them
-			update();
+			long rendered = System.nanoTime();
+			
+			// Split the frame into phases, taking the meshing and uploading out of the world update
+			long worldNanos = updated - picked - world.getMeshNanos() - world.getUploadNanos();
+			metrics.add(FrameMetrics.Phase.Update, picking - frameStart + worldNanos);
+			metrics.add(FrameMetrics.Phase.Raycast, picked - picking);
+			metrics.add(FrameMetrics.Phase.Mesh, world.getMeshNanos());
+			metrics.add(FrameMetrics.Phase.Upload, world.getUploadNanos());
+			metrics.add(FrameMetrics.Phase.Render, rendered - updated);
+			
+			// Draw the recent frames over the scene
+			if (showMetrics) {
+				overlay.draw(metrics);
+			}
+			
+			// Swap the buffers
+			glfwSwapBuffers(window);
+			
+			metrics.endFrame(System.nanoTime(), world.getDrawCalls(), world.getVerticesDrawn(), world.getChunksMeshed());
+			++frames;
+		}
+		
+		simulation.stop();
+		
+		// Report how often the simulation and the renderer ran
+		float seconds = (System.nanoTime() - startTime) / 1e9f;
+		System.out.printf("Ran %d ticks (%.1f/second) and %d frames (%.1f/second)%n",
+				simulation.getTicks(), simulation.getTicks() / seconds, frames, frames / seconds);
+		
+		// Report how much frustum culling saved
+		if (frames > 0) {
+			System.out.printf("Drew %.1f of %.1f chunks per frame%n", (float)chunksDrawn / frames, (float)chunksTested / frames);
+		}
+		
+		// Report the frame times, and save the metrics to compare with other builds
+		Histogram frameTimes = metrics.getFrameTimes();
+		System.out.printf("Frame times over the last %d frames: %.2f ms median, %.2f ms 99th percentile, %.2f ms max%n",
+				frameTimes.getCount(), frameTimes.getPercentile(0.5) / 1e3f, frameTimes.getPercentile(0.99) / 1e3f, frameTimes.getMax() / 1e3f);
+		
+		if (recording != null) {
+			try {
+				recording.addEnd(simulation.getTicks());
+				recording.write(Paths.get(RECORD_FILE));
+			} catch (IOException e) {
+				System.err.println("Could not write the recording to " + RECORD_FILE);
+				e.printStackTrace(System.err);
+			}
+		}
+		
+		if (METRICS_FILE != null) {
+			try {
+				metrics.write(Paths.get(METRICS_FILE), System.nanoTime());
+			} catch (IOException e) {
+				System.err.println("Could not write the metrics to " + METRICS_FILE);
+				e.printStackTrace(System.err);
+			}
 		}
 	}
-
-	private Vec3f mulPos(Vec3f position, FloatBuffer fb) {
-	    Vec3f output = new Vec3f();
-
-	    output.x = position.x * fb.get(0) + position.y * fb.get(1) + position.z * fb.get(2);
-        output.y = position.x * fb.get(4) + position.y * fb.get(5) + position.z * fb.get(6);
-        output.z = position.x * fb.get(8) + position.y * fb.get(9) + position.z * fb.get(10);
-
-	    return output;
-    }
-
+	
 	private void render() {
 		// Clear the frame buffer
 		glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
@@ -234,115 +404,81 @@ public class Voxels {
         glEnd();
 
         glPopMatrix();
-
+		
 		// Rotate everything according to the player's view
 		glRotatef(player.getRotation().x, 1, 0, 0);
 		glRotatef(player.getRotation().y, 0, 1, 0);
 
-        float distance = 0;
-
-        FloatBuffer fb = BufferUtils.createFloatBuffer(16);
-        GL11.glGetFloatv(GL11.GL_MODELVIEW_MATRIX, fb);
-
-        while (distance < 20) {
-            Vec3f vec = mulPos(new Vec3f(0, 0, distance), fb);
-
-            vec.y = -vec.y;
-
-            vec.add(player.getPosition());
-
-            Block b = spawn.getBlock(vec);
-
-            if (b != null && b.getBlockType() != BlockType.Air && glfwGetMouseButton(window, GLFW_MOUSE_BUTTON_1) == GLFW_PRESS) {
-                b.setBlockType(BlockType.Air);
-
-                spawn.update();
-
-                break;
-            }
-
-            distance += 0.5f;
-        }
-
         glColor3f(1, 1, 1);
-
-		// Move to the Chunk's position
-		float xPosition = player.getPosition().x - spawn.getPosition().x;
-		float yPosition = player.getPosition().y - spawn.getPosition().y;
-		float zPosition = player.getPosition().z - spawn.getPosition().z;
-		glTranslatef(xPosition, -yPosition, zPosition);
-
-		// Render the spawn Chunk
-		spawn.render();
-
-		// Swap the buffers
-		glfwSwapBuffers(window);
+		
+		// Find what the view can see, from the same rotation as the modelview matrix
+		view.identity();
+		view.rotate(player.getRotation().x, 1, 0, 0);
+		view.rotate(player.getRotation().y, 0, 1, 0);
+		viewProjection.mul(projection, view);
+		frustum.set(viewProjection);
+		
+		// Render the loaded Chunks that are in view
+		world.render(eyePosition, frustum);
+		
+		chunksTested += world.getChunksTested();
+		chunksDrawn += world.getChunksDrawn();
+	}
+	
+	private void pick() {
+		// Break the Block being looked at while the left button is held
+		boolean breaking = glfwGetMouseButton(window, GLFW_MOUSE_BUTTON_1) == GLFW_PRESS;
+		// Place a Block against the face being looked at once per right click
+		boolean placeDown = glfwGetMouseButton(window, GLFW_MOUSE_BUTTON_2) == GLFW_PRESS;
+		boolean placing = placeDown && !placeHeld;
+		
+		placeHeld = placeDown;
+		
+		if (!breaking && !placing) {
+			return;
+		}
+		
+		if (breaking) {
+			if (picker.breakBlock(player, eyePosition) && recording != null) {
+				recording.addBreak(simulation.getTicks());
+			}
+		} else if (picker.placeBlock(player, eyePosition, PLACED_BLOCK) && recording != null) {
+			recording.addPlace(simulation.getTicks());
+		}
 	}
 	
 	private void update() {
 		// Poll for any window events
 		glfwPollEvents();
-
-		// Set aside a vector for the change in position
-		Vec3f deltaPosition = new Vec3f();
-
-		// Move the cube based on WASD
+		
+		// Collect the movement keys for the simulation
+		int input = 0;
+		
+		// Move the player based on WASD
 		if (keys[GLFW_KEY_W]) {
-			deltaPosition.z += speed * Math.cos(player.getRotation().y / 180 * Math.PI);
-			deltaPosition.x -= speed * Math.sin(player.getRotation().y / 180 * Math.PI);
+			input |= Simulation.FORWARD;
 		}
 		
 		if (keys[GLFW_KEY_S]) {
-			deltaPosition.z -= speed * Math.cos(player.getRotation().y / 180 * Math.PI);
-			deltaPosition.x += speed * Math.sin(player.getRotation().y / 180 * Math.PI);
+			input |= Simulation.BACKWARD;
 		}
 		
 		if (keys[GLFW_KEY_A]) {
-			deltaPosition.z += speed * Math.sin(player.getRotation().y / 180 * Math.PI);
-			deltaPosition.x += speed * Math.cos(player.getRotation().y / 180 * Math.PI);
+			input |= Simulation.LEFT;
 		}
 		
 		if (keys[GLFW_KEY_D]) {
-			deltaPosition.z -= speed * Math.sin(player.getRotation().y / 180 * Math.PI);
-			deltaPosition.x -= speed * Math.cos(player.getRotation().y / 180 * Math.PI);
+			input |= Simulation.RIGHT;
 		}
 		
 		if (keys[GLFW_KEY_SPACE]) {
-			deltaPosition.y += speed;
+			input |= Simulation.UP;
 		}
 		
 		if (keys[GLFW_KEY_LEFT_SHIFT]) {
-			deltaPosition.y -= speed;
+			input |= Simulation.DOWN;
 		}
 		
-		// Change the player's position accordingly
-		float distance = 0;
-
-        Block b = null;
-        Vec3f tempPosition;
-
-		while (distance < 100 && deltaPosition.length() > 0) {
-            Vec3f tempDelta = new Vec3f(deltaPosition.x, deltaPosition.y, deltaPosition.z);
-
-            tempDelta.normalize();
-
-            tempDelta.mul(distance / 100 * deltaPosition.length());
-            tempPosition = new Vec3f(player.getPosition().x, player.getPosition().y, player.getPosition().z);
-            tempPosition.add(tempDelta);
-
-            b = spawn.getBlock(tempPosition);
-
-            if (b != null && b.getBlockType() != BlockType.Air) {
-                break;
-            }
-
-            distance += 1f;
-        }
-
-        if (b == null || b.getBlockType() == BlockType.Air) {
-            player.addPosition(deltaPosition);
-        }
-		
 		// If the mouse clicks
 		if (glfwGetMouseButton(window, GLFW_MOUSE_BUTTON_1) == GLFW_PRESS && !mouseLocked) {
 			// Set the cursor position to the center of the window
@@ -354,41 +490,44 @@ public class Voxels {
 			// Hide the cursor
 			glfwSetInputMode(window, GLFW_CURSOR, GLFW_CURSOR_DISABLED);
 		}
-
+		
 		if (mouseLocked) {
-			// Set aside buffers for the mouse data
-			DoubleBuffer x = BufferUtils.createDoubleBuffer(1);
-			DoubleBuffer y = BufferUtils.createDoubleBuffer(1);
-			
 			// Get the current mouse position
-			glfwGetCursorPos(window, x, y);
-			
-			// Go back to the start of the buffers
-			x.rewind();
-			y.rewind();
+			glfwGetCursorPos(window, cursorX, cursorY);
 			
 			// Get the travel distance of the mouse
-			float deltaX = (float)x.get() - WIDTH / 2;
-			float deltaY = (float)y.get() - HEIGHT / 2;
-
+			float deltaX = (float)cursorX.get(0) - WIDTH / 2;
+			float deltaY = (float)cursorY.get(0) - HEIGHT / 2;
+			
 			// Add rotation accordingly
-			player.addRotation(new Vec3f(deltaY, deltaX, 0));
+			deltaRotation.set(deltaY, deltaX, 0);
+			player.addRotation(deltaRotation);
 
-            if (player.getRotation().x >= 90) {
-                player.setRotation(new Vec3f(90, player.getRotation().y, player.getRotation().z));
-            }
+            // Clamp and wrap the rotation in place
+            Vec3f rotation = player.getRotation();
 
-            if (player.getRotation().x <= -90) {
-                player.setRotation(new Vec3f(-90, player.getRotation().y, player.getRotation().z));
+            if (rotation.x >= 90) {
+                rotation.x = 90;
             }
 
-            if (player.getRotation().y >= 360 || player.getRotation().y <= -360) {
-                player.setRotation(new Vec3f(player.getRotation().x, player.getRotation().y % 360, player.getRotation().z));
+            if (rotation.x <= -90) {
+                rotation.x = -90;
             }
 
+            if (rotation.y >= 360 || rotation.y <= -360) {
+                rotation.y %= 360;
+            }
+			
 			// Set the cursor position back to the center of the window
 			glfwSetCursorPos(window, WIDTH / 2, HEIGHT / 2);
 		}
+		
+		// Pass the movement keys and the direction faced to the simulation
+		simulation.setInput(input, player.getRotation().y);
+		
+		if (recording != null) {
+			recording.record(simulation.getTicks(), input, player.getRotation());
+		}
 	}
 	
 	private void handleKey(long window, int key, int scancode, int action, int mods) {
@@ -397,11 +536,22 @@ public class Voxels {
 			glfwSetWindowShouldClose(window, true);
 		}
 		
+		// Show or hide the frame metrics
+		if (key == GLFW_KEY_F3 && action == GLFW_PRESS) {
+			showMetrics = !showMetrics;
+		}
+		
 		// Set the corresponding entry in keys to the changed key state
 		keys[key] = action != GLFW_RELEASE;
 	}
 	
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		// Replay a recorded session without a window if asked to
+		if (args.length == 2 && args[0].equals("--replay")) {
+			HeadlessReplay.run(Paths.get(args[1]));
+			return;
+		}
+		
 		// Start the game
 		new Voxels().run();
 	}
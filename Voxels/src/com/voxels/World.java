@@ -0,0 +1,781 @@
+package com.voxels;
+
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glPopMatrix;
+import static org.lwjgl.opengl.GL11.glPushMatrix;
+import static org.lwjgl.opengl.GL11.glTranslatef;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+
+import java.util.Arrays;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+import com.voxels.math.Frustum;
+import com.voxels.math.Vec3f;
+import com.voxels.storage.RegionStore;
+import com.voxels.storage.StoredTerrainGenerator;
+import com.voxels.terrain.TerrainGenerator;
+
+// Owns the loaded Chunks and streams them in and out around the Player. Blocks are addressed
+// by world Block coordinates; Player space maps to them through blockX/blockY/blockZ.
+public class World implements SolidBlocks {
+	private static final int SHIFT = Integer.numberOfTrailingZeros(Chunk.CHUNK_SIZE);
+	private static final int MASK = Chunk.CHUNK_SIZE - 1;
+	private static final float CHUNK_LENGTH = Chunk.CHUNK_SIZE * Block.DEFAULT_SIZE;
+	private static final Side[] SIDES = Side.values();
+	// Offsets of the 20 Chunks that touch a Chunk along an edge or at a corner
+	private static final int[][] EDGE_OFFSETS = edgeOffsets();
+	// Coarsest level of detail, with cells of 8 Blocks on a side
+	static final int MAX_LOD = 3;
+	// Chunks a column must be past where a level of detail starts to move to it, either way
+	private static final float LOD_HYSTERESIS = 1;
+	
+	private ChunkMap<Chunk> chunks = null;
+	// The loaded Chunks stacked at each x, z (keyed with a y of 0), with their heightmaps
+	private ChunkMap<ChunkColumn> columns = null;
+	// Chunks being generated and meshed by the workers
+	private ChunkMap<Chunk> pending = null;
+	// Loaded Chunks being meshed again by the workers
+	private int remeshing = 0;
+	// Columns (in chunk coordinates) around the Blocks set since the last update, whose Chunks are meshed on
+	// this thread so an edit shows at once. Light from an edit reaches at most one Chunk across.
+	private boolean edited = false;
+	private int editMinX = 0;
+	private int editMaxX = 0;
+	private int editMinZ = 0;
+	private int editMaxZ = 0;
+	private ChunkWorkers workers = null;
+	private LightEngine lights = null;
+	// Heights of a column before a Chunk joined it, to find the sky it covers
+	private int[] previousHeights = new int[Chunk.FACE_AREA];
+	private TerrainGenerator generator = null;
+	// Where unloaded Chunks are saved (null to not save anything)
+	private RegionStore store = null;
+	private int viewDistance = 0;
+	private int verticalDistance = 0;
+	// Distance in Chunks where the first level of detail starts, each further level starting twice as far (0 for none)
+	private int lodDistance = 0;
+	// Whether every column is at the level of detail for its distance
+	private boolean lodsSettled = true;
+	private int uploadsPerUpdate = 0;
+	// Chunk the Player was in at the last update, and whether loading around it is finished
+	private int centerX = 0;
+	private int centerY = 0;
+	private int centerZ = 0;
+	private boolean loaded = false;
+	// Keys of Chunks to unload, reused between updates
+	private long[] unloadKeys = new long[64];
+	// Chunks checked against the frustum, left out, and drawn in the last render
+	private int chunksTested = 0;
+	private int chunksCulled = 0;
+	private int chunksDrawn = 0;
+	// Draw calls and vertices submitted in the last render
+	private int drawCalls = 0;
+	private int verticesDrawn = 0;
+	// Chunks meshed on this thread, and the time spent meshing and uploading, in the last update
+	private int chunksMeshed = 0;
+	private long meshNanos = 0;
+	private long uploadNanos = 0;
+	
+	World(TerrainGenerator generator, RegionStore store, int viewDistance, int verticalDistance, int lodDistance, ChunkWorkers workers, int uploadsPerUpdate) {
+		chunks = new ChunkMap<Chunk>();
+		columns = new ChunkMap<ChunkColumn>();
+		pending = new ChunkMap<Chunk>();
+		this.store = store;
+		
+		// Load saved Chunks instead of generating them again
+		this.generator = store == null ? generator : new StoredTerrainGenerator(store, generator);
+		this.workers = workers;
+		lights = new LightEngine(this);
+		this.viewDistance = viewDistance;
+		this.verticalDistance = verticalDistance;
+		this.lodDistance = lodDistance;
+		this.uploadsPerUpdate = uploadsPerUpdate;
+	}
+	
+	// Convert a Player space coordinate to the world Block coordinate containing it
+	public static int blockX(float x) {
+		return (int)Math.floor(-x / Block.DEFAULT_SIZE);
+	}
+	
+	public static int blockY(float y) {
+		return (int)Math.floor(y / Block.DEFAULT_SIZE);
+	}
+	
+	public static int blockZ(float z) {
+		return (int)Math.floor(-z / Block.DEFAULT_SIZE);
+	}
+	
+	public Chunk getChunk(int chunkX, int chunkY, int chunkZ) {
+		return chunks.get(ChunkMap.key(chunkX, chunkY, chunkZ));
+	}
+	
+	// Get the BlockType at world Block coordinates, or null if its Chunk is not loaded
+	public BlockType getBlock(int x, int y, int z) {
+		Chunk chunk = chunks.get(ChunkMap.key(x >> SHIFT, y >> SHIFT, z >> SHIFT));
+		
+		if (chunk == null) {
+			return null;
+		}
+		
+		return chunk.getBlock(x & MASK, y & MASK, z & MASK);
+	}
+	
+	public BlockType getBlock(Vec3f location) {
+		return getBlock(blockX(location.x), blockY(location.y), blockZ(location.z));
+	}
+	
+	// Whether the Block at world Block coordinates stops movement; Chunks that are not loaded yet don't
+	@Override
+	public boolean isSolid(int x, int y, int z) {
+		BlockType type = getBlock(x, y, z);
+		
+		return type != null && type != BlockType.Air;
+	}
+	
+	// Get the loaded Chunks at chunk x, z, or null if none are loaded
+	ChunkColumn getColumn(int chunkX, int chunkZ) {
+		return columns.get(ChunkMap.key(chunkX, 0, chunkZ));
+	}
+	
+	// Get the world y of the highest solid Block in the loaded Chunks at world Block x, z, or
+	// ChunkColumn.NO_HEIGHT if there is none
+	public int getHighestBlock(int x, int z) {
+		ChunkColumn column = getColumn(x >> SHIFT, z >> SHIFT);
+		
+		return column == null ? ChunkColumn.NO_HEIGHT : column.getHeight(x & MASK, z & MASK);
+	}
+	
+	// Set the BlockType at world Block coordinates, ignoring Chunks that are not loaded
+	public void setBlock(int x, int y, int z, BlockType type) {
+		Chunk chunk = chunks.get(ChunkMap.key(x >> SHIFT, y >> SHIFT, z >> SHIFT));
+		
+		if (chunk == null) {
+			return;
+		}
+		
+		int index = Chunk.index(x & MASK, y & MASK, z & MASK);
+		ChunkColumn column = getColumn(chunk.getX(), chunk.getZ());
+		int previousHeight = column.getHeight(x & MASK, z & MASK);
+		
+		chunk.setBlock(index, type);
+		column.setBlock(x & MASK, y, z & MASK, type);
+		markEdited(chunk);
+		lights.blockChanged(chunk, index, column, previousHeight);
+		
+		// A Block on the edge of the Chunk can show or hide a face of the neighbour across that edge
+		for (Side side : SIDES) {
+			if (Chunk.neighbourIndex(index, side) < 0) {
+				Chunk neighbour = getNeighbour(chunk, side);
+				
+				if (neighbour != null) {
+					neighbour.markDirty(neighbour.getStaleSections(side.opposite(), chunk));
+				}
+			}
+		}
+		
+		// On an edge or corner it also shades the corners of faces in the Chunks diagonally next to it
+		for (int[] offset : EDGE_OFFSETS) {
+			if (isOnBoundary(x, offset[0]) && isOnBoundary(y, offset[1]) && isOnBoundary(z, offset[2])) {
+				Chunk neighbour = getNeighbour(chunk, offset[0], offset[1], offset[2]);
+				
+				if (neighbour != null) {
+					neighbour.markDirty(neighbour.getStaleEdgeSections(-offset[0], -offset[1], -offset[2], chunk));
+				}
+			}
+		}
+	}
+	
+	// Widen the columns meshed on this thread in the next update to take in the Chunk and those around it
+	private void markEdited(Chunk chunk) {
+		if (!edited) {
+			edited = true;
+			editMinX = Integer.MAX_VALUE;
+			editMaxX = Integer.MIN_VALUE;
+			editMinZ = Integer.MAX_VALUE;
+			editMaxZ = Integer.MIN_VALUE;
+		}
+		
+		editMinX = Math.min(editMinX, chunk.getX() - 1);
+		editMaxX = Math.max(editMaxX, chunk.getX() + 1);
+		editMinZ = Math.min(editMinZ, chunk.getZ() - 1);
+		editMaxZ = Math.max(editMaxZ, chunk.getZ() + 1);
+	}
+	
+	private boolean isNearEdit(Chunk chunk) {
+		return edited && chunk.getX() >= editMinX && chunk.getX() <= editMaxX && chunk.getZ() >= editMinZ && chunk.getZ() <= editMaxZ;
+	}
+	
+	private static int[][] edgeOffsets() {
+		int[][] offsets = new int[20][];
+		int count = 0;
+		
+		for (int dz = -1; dz <= 1; ++dz) {
+			for (int dy = -1; dy <= 1; ++dy) {
+				for (int dx = -1; dx <= 1; ++dx) {
+					if (Chunk.isEdge(dx, dy, dz)) {
+						offsets[count++] = new int[] { dx, dy, dz };
+					}
+				}
+			}
+		}
+		
+		return offsets;
+	}
+	
+	// Whether a world Block coordinate is on the boundary of its Chunk facing an offset of -1, 0 or 1 (any for 0)
+	private static boolean isOnBoundary(int coordinate, int offset) {
+		return offset == 0 || (coordinate & MASK) == (offset > 0 ? MASK : 0);
+	}
+	
+	private Chunk getNeighbour(Chunk chunk, Side side) {
+		return getNeighbour(chunk, side.dx, side.dy, side.dz);
+	}
+	
+	private Chunk getNeighbour(Chunk chunk, int dx, int dy, int dz) {
+		return chunks.get(ChunkMap.key(chunk.getX() + dx, chunk.getY() + dy, chunk.getZ() + dz));
+	}
+	
+	// Copy the edges of the loaded neighbours into the Chunk before meshing it
+	private void captureBorders(Chunk chunk) {
+		for (Side side : SIDES) {
+			chunk.captureBorder(side, getNeighbour(chunk, side));
+		}
+		
+		for (int[] offset : EDGE_OFFSETS) {
+			chunk.captureEdge(offset[0], offset[1], offset[2], getNeighbour(chunk, offset[0], offset[1], offset[2]));
+		}
+		
+		updateSeams(chunk);
+	}
+	
+	// Get the level of detail for a column at chunk x, z that is at the given level now. A column only moves
+	// to another level once it is LOD_HYSTERESIS past where that level starts, so walking back and forth over
+	// the line doesn't keep meshing it again.
+	private int selectLod(int chunkX, int chunkZ, int lod) {
+		if (lodDistance <= 0) {
+			return 0;
+		}
+		
+		int deltaX = chunkX - centerX;
+		int deltaZ = chunkZ - centerZ;
+		float distance = (float)Math.sqrt(deltaX * deltaX + deltaZ * deltaZ);
+		
+		while (lod < MAX_LOD && distance > getLodStart(lod + 1) + LOD_HYSTERESIS) {
+			++lod;
+		}
+		while (lod > 0 && distance < getLodStart(lod) - LOD_HYSTERESIS) {
+			--lod;
+		}
+		
+		return lod;
+	}
+	
+	// Get the distance in Chunks where a level of detail (from 1 up) starts
+	private int getLodStart(int lod) {
+		return lodDistance << (lod - 1);
+	}
+	
+	// Move the columns to the level of detail for their distance, no faster than the workers can mesh them
+	// again, so crossing into a Chunk doesn't queue a whole ring at once
+	private void updateLods() {
+		// Chunks to mesh again for the columns moved in this update, within the same budget as uploads
+		int remeshes = 0;
+		lodsSettled = true;
+		
+		for (int slot = 0; slot < columns.capacity(); ++slot) {
+			ChunkColumn column = columns.valueAt(slot);
+			
+			if (column == null) {
+				continue;
+			}
+			
+			int lod = selectLod(column.getX(), column.getZ(), column.getLod());
+			
+			if (lod != column.getLod()) {
+				// Leave the rest for the next update, or until the workers have room
+				if (remeshes >= uploadsPerUpdate || workers.isFull()) {
+					lodsSettled = false;
+					return;
+				}
+				
+				column.setLod(lod);
+				remeshes += column.getChunkCount();
+				
+				for (int index = 0; index < column.getChunkCount(); ++index) {
+					updateSeamsAround(column.getChunkAt(index));
+				}
+			}
+		}
+	}
+	
+	// Update the seams of a Chunk and its neighbours after it arrived or changed its level of detail
+	private void updateSeamsAround(Chunk chunk) {
+		updateSeams(chunk);
+		
+		for (Side side : SIDES) {
+			Chunk neighbour = getNeighbour(chunk, side);
+			
+			if (neighbour != null) {
+				updateSeams(neighbour);
+			}
+		}
+	}
+	
+	// Mark the sides of a coarser Chunk toward loaded neighbours at another level of detail as seams. Chunks
+	// at full detail have none: the coarser side closes the seam, as it is much quicker to mesh again.
+	private void updateSeams(Chunk chunk) {
+		int seams = 0;
+		
+		for (Side side : SIDES) {
+			Chunk neighbour = getNeighbour(chunk, side);
+			
+			if (chunk.getLod() > 0 && neighbour != null && neighbour.getLod() != chunk.getLod()) {
+				seams |= 1 << side.ordinal();
+			}
+		}
+		
+		chunk.setSeams(seams);
+	}
+	
+	// Whether every Chunk in range has been built and uploaded
+	boolean isFullyLoaded() {
+		return loaded && pending.size() == 0 && remeshing == 0;
+	}
+	
+	public TerrainGenerator getGenerator() {
+		return generator;
+	}
+	
+	public int getViewDistance() {
+		return viewDistance;
+	}
+	
+	// Stream and rebuild Chunks around the Player's position
+	void update(Vec3f position) {
+		chunksMeshed = 0;
+		meshNanos = 0;
+		uploadNanos = 0;
+		
+		int chunkX = blockX(position.x) >> SHIFT;
+		int chunkY = blockY(position.y) >> SHIFT;
+		int chunkZ = blockZ(position.z) >> SHIFT;
+		
+		// Stream Chunks when the Player enters a new Chunk
+		if (chunkX != centerX || chunkY != centerY || chunkZ != centerZ) {
+			centerX = chunkX;
+			centerY = chunkY;
+			centerZ = chunkZ;
+			loaded = false;
+			lodsSettled = false;
+			
+			unloadFarChunks();
+		}
+		
+		// Upload a limited number of finished Chunks, so frame times stay flat while streaming
+		for (int uploads = 0; uploads < uploadsPerUpdate; ++uploads) {
+			Chunk chunk = workers.poll();
+			
+			if (chunk == null) {
+				break;
+			}
+			
+			// A copy meshed again hands its meshes back, unless its Chunk was unloaded in the meantime
+			Chunk original = chunk.getOriginal();
+			if (original != null) {
+				--remeshing;
+				
+				if (getChunk(original.getX(), original.getY(), original.getZ()) == original) {
+					original.finishMeshing(chunk);
+					upload(original);
+				}
+				
+				continue;
+			}
+			
+			long key = ChunkMap.key(chunk.getX(), chunk.getY(), chunk.getZ());
+			pending.remove(key);
+			
+			// Drop Chunks the Player moved away from while they were being built
+			if (!inRange(chunk.getX(), chunk.getY(), chunk.getZ(), viewDistance + 1)) {
+				continue;
+			}
+			
+			chunks.put(key, chunk);
+			addToColumn(chunk);
+			
+			// It takes its column's level of detail, which the Player may have moved away from since it was built
+			updateSeamsAround(chunk);
+			
+			// Mesh again if neighbours came, went or changed their light while the Chunk was being built
+			for (Side side : SIDES) {
+				Chunk neighbour = getNeighbour(chunk, side);
+				chunk.markDirty(chunk.getStaleSections(side, neighbour));
+				
+				// Neighbours meshed before this Chunk arrived may have faces to show or hide against it
+				if (neighbour != null) {
+					neighbour.markDirty(neighbour.getStaleSections(side.opposite(), chunk));
+				}
+			}
+			
+			// The same for the Chunks touching it only along an edge or at a corner, which shade each other's corners
+			for (int[] offset : EDGE_OFFSETS) {
+				Chunk neighbour = getNeighbour(chunk, offset[0], offset[1], offset[2]);
+				chunk.markDirty(chunk.getStaleEdgeSections(offset[0], offset[1], offset[2], neighbour));
+				
+				if (neighbour != null) {
+					neighbour.markDirty(neighbour.getStaleEdgeSections(-offset[0], -offset[1], -offset[2], chunk));
+				}
+			}
+			
+			// A stale mesh waits to be meshed again below rather than being uploaded twice
+			if (!chunk.isDirty()) {
+				upload(chunk);
+			}
+		}
+		
+		if (!lodsSettled) {
+			updateLods();
+		}
+		
+		// Mesh the changed sections of each Chunk again (once per update however many Blocks changed). Those
+		// around an edit are meshed here so it shows at once; the rest go back to the workers, no more per
+		// update than can be uploaded, ahead of loading new Chunks so faces against new neighbours show soon.
+		int remeshes = 0;
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			if (chunk == null || !chunk.isDirty() || chunk.isMeshing()) {
+				continue;
+			}
+			
+			if (isNearEdit(chunk)) {
+				rebuild(chunk);
+			} else if (remeshes < uploadsPerUpdate) {
+				captureBorders(chunk);
+				
+				// The rest wait for the next update once the workers are busy
+				if (workers.remesh(chunk)) {
+					++remeshing;
+					++remeshes;
+				} else {
+					remeshes = uploadsPerUpdate;
+				}
+			}
+		}
+		
+		edited = false;
+		
+		if (!loaded) {
+			loadNearChunks();
+		}
+	}
+	
+	private void addToColumn(Chunk chunk) {
+		long key = ChunkMap.key(chunk.getX(), 0, chunk.getZ());
+		ChunkColumn column = columns.get(key);
+		
+		// A new column starts at the level of detail its first Chunk was built at, if that still fits
+		if (column == null) {
+			column = new ChunkColumn(chunk.getX(), chunk.getZ());
+			column.setLod(selectLod(chunk.getX(), chunk.getZ(), chunk.getLod()));
+			columns.put(key, column);
+		}
+		
+		column.copyHeights(previousHeights);
+		column.add(chunk);
+		lights.addChunk(chunk, column, previousHeights);
+	}
+	
+	private void removeFromColumn(Chunk chunk) {
+		long key = ChunkMap.key(chunk.getX(), 0, chunk.getZ());
+		ChunkColumn column = columns.get(key);
+		column.remove(chunk);
+		
+		// Drop columns with nothing left in them
+		if (column.isEmpty()) {
+			columns.remove(key);
+		}
+	}
+	
+	private void upload(Chunk chunk) {
+		long start = System.nanoTime();
+		chunk.upload();
+		uploadNanos += System.nanoTime() - start;
+	}
+	
+	// Mesh the changed sections of a Chunk on this thread and upload it
+	private void rebuild(Chunk chunk) {
+		captureBorders(chunk);
+		
+		long start = System.nanoTime();
+		chunk.build();
+		long built = System.nanoTime();
+		chunk.upload();
+		
+		meshNanos += built - start;
+		uploadNanos += System.nanoTime() - built;
+		++chunksMeshed;
+	}
+	
+	public int getChunksTested() {
+		return chunksTested;
+	}
+	
+	public int getChunksCulled() {
+		return chunksCulled;
+	}
+	
+	public int getChunksDrawn() {
+		return chunksDrawn;
+	}
+	
+	public int getDrawCalls() {
+		return drawCalls;
+	}
+	
+	public int getVerticesDrawn() {
+		return verticesDrawn;
+	}
+	
+	public int getChunksMeshed() {
+		return chunksMeshed;
+	}
+	
+	public long getMeshNanos() {
+		return meshNanos;
+	}
+	
+	public long getUploadNanos() {
+		return uploadNanos;
+	}
+	
+	// Get roughly how many bytes the Blocks of the loaded Chunks take up
+	public long getStorageBytes() {
+		long bytes = 0;
+		
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			if (chunk != null) {
+				bytes += chunk.getStorageBytes();
+			}
+		}
+		
+		return bytes;
+	}
+	
+	// Get how many loaded Chunks are meshed at a level of detail
+	public int getChunksAtLod(int lod) {
+		int count = 0;
+		
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			if (chunk != null && chunk.getLod() == lod) {
+				++count;
+			}
+		}
+		
+		return count;
+	}
+	
+	// Get how many vertices the meshes of the loaded Chunks at a level of detail hold
+	public long getVerticesAtLod(int lod) {
+		long vertices = 0;
+		
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			if (chunk != null && chunk.getLod() == lod) {
+				vertices += chunk.getVertexCount();
+			}
+		}
+		
+		return vertices;
+	}
+	
+	// Get how many sections of the loaded Chunks store a single BlockType without an array
+	public int getUniformSections() {
+		int sections = 0;
+		
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			for (int section = 0; chunk != null && section < Chunk.SECTION_COUNT; ++section) {
+				if (chunk.isSectionUniform(section)) {
+					++sections;
+				}
+			}
+		}
+		
+		return sections;
+	}
+	
+	public int getLoadedChunks() {
+		return chunks.size();
+	}
+	
+	// Draw the loaded Chunks inside the frustum as seen from the Player's position. The frustum
+	// must be in the same space as the Chunks are drawn in: rotated by the view, centered on the Player.
+	void render(Vec3f position, Frustum frustum) {
+		chunksTested = 0;
+		chunksCulled = 0;
+		chunksDrawn = 0;
+		drawCalls = 0;
+		verticesDrawn = 0;
+		
+		// Use the chunk shader and the sprite sheet for every Chunk
+		glUseProgram(Chunk.CHUNK_SHADER);
+		glBindTexture(Block.BLOCK_TEXTURE_TARGET, Block.BLOCK_TEXTURES);
+		
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			if (chunk == null) {
+				continue;
+			}
+			
+			// Get the Chunk's position relative to the Player
+			float x = chunk.getX() * CHUNK_LENGTH + position.x;
+			float y = chunk.getY() * CHUNK_LENGTH - position.y;
+			float z = chunk.getZ() * CHUNK_LENGTH + position.z;
+			
+			// Skip Chunks outside the view
+			++chunksTested;
+			if (!frustum.intersectsBox(x, y, z, x + CHUNK_LENGTH, y + CHUNK_LENGTH, z + CHUNK_LENGTH)) {
+				++chunksCulled;
+				continue;
+			}
+			
+			// Move to the Chunk's position
+			glPushMatrix();
+			glTranslatef(x, y, z);
+			
+			int vertices = chunk.render();
+			++chunksDrawn;
+			
+			if (vertices > 0) {
+				++drawCalls;
+				verticesDrawn += vertices;
+			}
+			
+			glPopMatrix();
+		}
+		
+		// Stop using the sprite sheet and the shader
+		glBindTexture(Block.BLOCK_TEXTURE_TARGET, 0);
+		glUseProgram(0);
+	}
+	
+	void delete() {
+		// Stop building Chunks nobody will upload
+		workers.shutdown();
+		
+		// Unload every Chunk, saving the changed ones
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			if (chunk != null) {
+				unload(chunk);
+			}
+		}
+		
+		chunks.clear();
+		columns.clear();
+		pending.clear();
+	}
+	
+	private boolean inRange(int chunkX, int chunkY, int chunkZ, int distance) {
+		int deltaX = chunkX - centerX;
+		int deltaZ = chunkZ - centerZ;
+		
+		return deltaX * deltaX + deltaZ * deltaZ <= distance * distance
+				&& Math.abs(chunkY - centerY) <= verticalDistance;
+	}
+	
+	private void loadNearChunks() {
+		// Load rings outwards from the Player, so the closest Chunks appear first
+		for (int ring = 0; ring <= viewDistance; ++ring) {
+			for (int deltaX = -ring; deltaX <= ring; ++deltaX) {
+				for (int deltaZ = -ring; deltaZ <= ring; ++deltaZ) {
+					// Only visit the edge of the ring
+					if (Math.abs(deltaX) != ring && Math.abs(deltaZ) != ring) {
+						continue;
+					}
+					
+					for (int deltaY = -verticalDistance; deltaY <= verticalDistance; ++deltaY) {
+						int chunkX = centerX + deltaX;
+						int chunkY = centerY + deltaY;
+						int chunkZ = centerZ + deltaZ;
+						
+						if (!inRange(chunkX, chunkY, chunkZ, viewDistance)) {
+							continue;
+						}
+						
+						long key = ChunkMap.key(chunkX, chunkY, chunkZ);
+						
+						if (chunks.get(key) != null || pending.get(key) != null) {
+							continue;
+						}
+						
+						// Leave the rest for the next update once the workers are busy
+						if (workers.isFull()) {
+							return;
+						}
+						
+						Chunk chunk = new Chunk(chunkX, chunkY, chunkZ);
+						ChunkColumn column = getColumn(chunkX, chunkZ);
+						
+						// Build it at its column's level of detail
+						chunk.setLod(column != null ? column.getLod() : selectLod(chunkX, chunkZ, 0));
+						captureBorders(chunk);
+						if (!workers.submit(chunk, generator)) {
+							return;
+						}
+						
+						pending.put(key, chunk);
+					}
+				}
+			}
+		}
+		
+		loaded = true;
+	}
+	
+	private void unloadFarChunks() {
+		int unloadCount = 0;
+		
+		// Collect the Chunks past the view distance (with a Chunk of slack, so walking
+		// back and forth over a border doesn't reload the same Chunks)
+		for (int slot = 0; slot < chunks.capacity(); ++slot) {
+			Chunk chunk = chunks.valueAt(slot);
+			
+			if (chunk == null || inRange(chunk.getX(), chunk.getY(), chunk.getZ(), viewDistance + 1)) {
+				continue;
+			}
+			
+			if (unloadCount == unloadKeys.length) {
+				unloadKeys = Arrays.copyOf(unloadKeys, unloadKeys.length * 2);
+			}
+			
+			unloadKeys[unloadCount++] = chunks.keyAt(slot);
+		}
+		
+		// Remove them after iterating, as removing moves entries between slots
+		for (int index = 0; index < unloadCount; ++index) {
+			Chunk chunk = chunks.remove(unloadKeys[index]);
+			removeFromColumn(chunk);
+			unload(chunk);
+		}
+	}
+	
+	private void unload(Chunk chunk) {
+		chunk.delete();
+		
+		// Queue changed Chunks to be written in the background
+		if (store != null && chunk.isModified()) {
+			store.save(chunk);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.voxels.graphics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lwjgl.BufferUtils;
+
+// Keeps decoded images and the parsed BlockAtlas on disk, in files named after a hash of the source
+// they came from, so later starts with unchanged assets skip decoding and parsing entirely
+public class AssetCache {
+	// Bump when the layout of cache files changes, so old files are ignored
+	private static final int VERSION = 1;
+	private static final int MAGIC = 0x56584143;
+	
+	private Path directory = null;
+	// Assets found in and missing from the cache (assets may load on several threads)
+	private AtomicInteger hits = new AtomicInteger();
+	private AtomicInteger misses = new AtomicInteger();
+	
+	public AssetCache(Path directory) throws IOException {
+		this.directory = directory;
+		
+		Files.createDirectories(directory);
+	}
+	
+	public int getHits() {
+		return hits.get();
+	}
+	
+	public int getMisses() {
+		return misses.get();
+	}
+	
+	// Get the decoded image, decoding and caching it if it isn't cached yet
+	public ImageData getImage(byte[] source) throws IOException {
+		Path path = directory.resolve(key(source) + ".rgba");
+		
+		// Read the cached pixels
+		if (Files.exists(path)) {
+			try (DataInputStream in = open(path)) {
+				int width = in.readInt();
+				int height = in.readInt();
+				byte[] pixels = new byte[width * height * ImageData.BYTES_PER_PIXEL];
+				in.readFully(pixels);
+				
+				hits.incrementAndGet();
+				return new ImageData(width, height, BufferUtils.createByteBuffer(pixels.length).put(pixels).flip());
+			} catch (IOException e) {
+				System.err.println("Could not read cached image " + path + ": " + e.getMessage());
+			}
+		}
+		
+		misses.incrementAndGet();
+		ImageData image = ImageData.decode(source);
+		
+		// Cache the pixels for next time
+		byte[] pixels = new byte[image.getWidth() * image.getHeight() * ImageData.BYTES_PER_PIXEL];
+		image.getPixels().get(pixels);
+		
+		write(path, out -> {
+			out.writeInt(image.getWidth());
+			out.writeInt(image.getHeight());
+			out.write(pixels);
+		});
+		
+		return image;
+	}
+	
+	// Fill the BlockAtlas from BlocksFormat.xml, parsing and caching it if it isn't cached yet
+	public void loadAtlas(byte[] source, BlocksFormatParser parser) throws IOException {
+		Path path = directory.resolve(key(source) + ".atlas");
+		float[] table = BlockAtlas.getTable();
+		
+		// Read the cached table
+		if (Files.exists(path)) {
+			try (DataInputStream in = open(path)) {
+				if (in.readInt() != table.length) {
+					throw new IOException("Different number of faces");
+				}
+				
+				for (int index = 0; index < table.length; ++index) {
+					table[index] = in.readFloat();
+				}
+				
+				hits.incrementAndGet();
+				return;
+			} catch (IOException e) {
+				System.err.println("Could not read cached atlas " + path + ": " + e.getMessage());
+			}
+		}
+		
+		misses.incrementAndGet();
+		parser.parse(new ByteArrayInputStream(source));
+		
+		// Cache the table for next time
+		write(path, out -> {
+			out.writeInt(table.length);
+			for (float value : table) {
+				out.writeFloat(value);
+			}
+		});
+	}
+	
+	private interface Writer {
+		void write(DataOutputStream out) throws IOException;
+	}
+	
+	private DataInputStream open(Path path) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+		
+		// Make sure the file is one of ours, written by this version
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			in.close();
+			throw new IOException("Not a version " + VERSION + " cache file");
+		}
+		
+		return in;
+	}
+	
+	private void write(Path path, Writer writer) {
+		// Write to a temporary file and move it into place, so a crash never leaves half a file
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writer.write(out);
+			}
+			
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// The cache is only an optimization, so carry on without it
+			System.err.println("Could not write cache file " + path + ": " + e.getMessage());
+		}
+	}
+	
+	private static String key(byte[] source) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(source);
+			StringBuilder key = new StringBuilder(hash.length * 2);
+			
+			for (byte value : hash) {
+				key.append(Character.forDigit((value >> 4) & 0xF, 16));
+				key.append(Character.forDigit(value & 0xF, 16));
+			}
+			
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
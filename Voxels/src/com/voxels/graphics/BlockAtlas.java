@@ -0,0 +1,91 @@
+package com.voxels.graphics;
+
+import java.util.Arrays;
+
+import com.voxels.Block.BlockType;
+import com.voxels.graphics.BlockTextureData.BlockFace;
+
+// Where every face of every BlockType is in the sprite sheet, in one flat table the mesher can index
+// directly. The entry of a face starts at index(type, face) and holds the corners u0, v0, u1, v1.
+public class BlockAtlas {
+	public static final int FACE_COUNT = BlockFace.values().length;
+	public static final int STRIDE = 4;
+	
+	// Faces that aren't in BlocksFormat.xml stay all zero
+	private static float[] table = new float[BlockType.values().length * FACE_COUNT * STRIDE];
+	// Layer of each face in the texture array, or null while the sprite sheet is used
+	private static int[] layers = null;
+	
+	private BlockAtlas() {
+	
+	}
+	
+	public static int index(BlockType type, BlockFace face) {
+		return index(type.ordinal(), face.ordinal());
+	}
+	
+	public static int index(int typeOrdinal, int faceOrdinal) {
+		return (typeOrdinal * FACE_COUNT + faceOrdinal) * STRIDE;
+	}
+	
+	// Get the table (written while loading, read-only afterwards)
+	public static float[] getTable() {
+		return table;
+	}
+	
+	// Whether the faces are drawn from a texture array instead of the sprite sheet
+	public static boolean isLayered() {
+		return layers != null;
+	}
+	
+	public static int getLayer(int typeOrdinal, int faceOrdinal) {
+		return layers[typeOrdinal * FACE_COUNT + faceOrdinal];
+	}
+	
+	// Give every distinct tile in the table its own layer, and get the table index of the first face
+	// using each layer. Faces that aren't in BlocksFormat.xml share layer 0.
+	static int[] assignLayers() {
+		int[] assigned = new int[table.length / STRIDE];
+		int[] firsts = new int[assigned.length];
+		int layerCount = 0;
+		
+		for (int face = 0; face < assigned.length; ++face) {
+			int index = face * STRIDE;
+			
+			// Skip faces without a tile
+			if (table[index + 2] == table[index]) {
+				continue;
+			}
+			
+			// Reuse the layer of an earlier face with the same tile
+			int layer = 0;
+			while (layer < layerCount && !Arrays.equals(table, firsts[layer], firsts[layer] + STRIDE, table, index, index + STRIDE)) {
+				++layer;
+			}
+			
+			if (layer == layerCount) {
+				firsts[layerCount++] = index;
+			}
+			
+			assigned[face] = layer;
+		}
+		
+		layers = assigned;
+		
+		return Arrays.copyOf(firsts, layerCount);
+	}
+	
+	// Go back to drawing from the sprite sheet
+	static void clearLayers() {
+		layers = null;
+	}
+	
+	static void set(BlockType type, BlockTextureData faceData) {
+		int index = index(type, faceData.getFace());
+		
+		table[index] = faceData.getXLoc();
+		table[index + 1] = faceData.getYLoc();
+		table[index + 2] = faceData.getXLoc() + faceData.getSize();
+		table[index + 3] = faceData.getYLoc() + faceData.getSize();
+	}
+}
@@ -1,7 +1,5 @@
 package com.voxels.graphics;
 
-import com.voxels.math.Vec2f;
-
 public class BlockTextureData {
 	public enum BlockFace {
 		Top,
@@ -25,19 +23,15 @@ public class BlockTextureData {
 		return face;
 	}
 	
-	public Vec2f getTopLeft() {
-		return new Vec2f(xLoc, yLoc);
-	}
-	
-	public Vec2f getTopRight() {
-		return new Vec2f(xLoc + size, yLoc);
+	float getXLoc() {
+		return xLoc;
 	}
 	
-	public Vec2f getBottomLeft() {
-		return new Vec2f(xLoc, yLoc + size);
+	float getYLoc() {
+		return yLoc;
 	}
 	
-	public Vec2f getBottomRight() {
-		return new Vec2f(xLoc + size, yLoc + size);
+	float getSize() {
+		return size;
 	}
 }
\ No newline at end of file
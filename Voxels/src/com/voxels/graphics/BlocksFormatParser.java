@@ -0,0 +1,10 @@
+package com.voxels.graphics;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads BlocksFormat.xml into the BlockAtlas:
+// <Blocks><BlockType><Face xLoc="" yLoc="" Size="" />...</BlockType>...</Blocks>
+public interface BlocksFormatParser {
+	void parse(InputStream stream) throws IOException;
+}
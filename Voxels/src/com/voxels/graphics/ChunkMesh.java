@@ -0,0 +1,110 @@
+package com.voxels.graphics;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.BufferUtils;
+
+public class ChunkMesh {
+	// Vertex layout: position (3 floats), tile-local coordinates (2 floats), atlas tile or texture array layer (3 floats),
+	// light (4 bytes: sky light, block light, corner shading, one unused)
+	public static final int POSITION_OFFSET = 0;
+	public static final int LOCAL_OFFSET = 3 * Float.BYTES;
+	public static final int TILE_OFFSET = 5 * Float.BYTES;
+	public static final int LIGHT_OFFSET = 8 * Float.BYTES;
+	public static final int VERTEX_SIZE = 8 * Float.BYTES + 4;
+	public static final int VERTICES_PER_QUAD = 4;
+	
+	// Shader attribute names, bound to locations in this order
+	public static final String[] ATTRIBUTES = { "position", "local", "tile", "light" };
+	public static final int POSITION_ATTRIBUTE = 0;
+	public static final int LOCAL_ATTRIBUTE = 1;
+	public static final int TILE_ATTRIBUTE = 2;
+	public static final int LIGHT_ATTRIBUTE = 3;
+	
+	private static final int INITIAL_QUADS = 256;
+	// What an empty mesh returns as its vertices
+	private static final ByteBuffer NO_VERTICES = BufferUtils.createByteBuffer(0);
+	
+	// Allocated with the first quad, so the many empty meshes of sky and buried Chunks cost nothing
+	private ByteBuffer vertices = null;
+	private int quadCount = 0;
+	
+	public void clear() {
+		if (vertices != null) {
+			vertices.clear();
+		}
+		quadCount = 0;
+	}
+	
+	public int getQuadCount() {
+		return quadCount;
+	}
+	
+	public int getVertexCount() {
+		return quadCount * VERTICES_PER_QUAD;
+	}
+	
+	// Get the written vertices, positioned at zero and limited to the end of the data
+	public ByteBuffer getVertices() {
+		if (vertices == null) {
+			return NO_VERTICES.duplicate();
+		}
+		
+		ByteBuffer data = vertices.duplicate().order(vertices.order());
+		data.flip();
+		
+		return data;
+	}
+	
+	// Add the quads of another mesh to the end of this one
+	public void append(ChunkMesh other) {
+		if (other.quadCount == 0) {
+			return;
+		}
+		
+		reserve(other.quadCount * VERTICES_PER_QUAD * VERTEX_SIZE);
+		
+		vertices.put(other.getVertices());
+		quadCount += other.quadCount;
+	}
+	
+	void beginQuad() {
+		reserve(VERTICES_PER_QUAD * VERTEX_SIZE);
+		
+		++quadCount;
+	}
+	
+	private void reserve(int bytes) {
+		if (vertices == null) {
+			if (bytes == 0) {
+				return;
+			}
+			
+			vertices = BufferUtils.createByteBuffer(Math.max(INITIAL_QUADS * VERTICES_PER_QUAD * VERTEX_SIZE, bytes));
+		}
+		
+		// Grow the buffer if the data does not fit
+		if (vertices.remaining() < bytes) {
+			int capacity = vertices.capacity() * 2;
+			while (capacity - vertices.position() < bytes) {
+				capacity *= 2;
+			}
+			
+			ByteBuffer grown = BufferUtils.createByteBuffer(capacity);
+			vertices.flip();
+			grown.put(vertices);
+			vertices = grown;
+		}
+	}
+	
+	// Add a vertex; light is the packed light of a Block (sky light in the high nibble, block light in the low),
+	// occlusion how much of the light the Blocks around the corner let reach it (0 to 3)
+	void putVertex(float x, float y, float z, float localU, float localV, float tileU, float tileV, float tileSize, int light, int occlusion) {
+		vertices.putFloat(x).putFloat(y).putFloat(z);
+		vertices.putFloat(localU).putFloat(localV);
+		vertices.putFloat(tileU).putFloat(tileV).putFloat(tileSize);
+		
+		// Scale each level (0 to 15) to a whole byte, so the shader reads them as 0 to 1
+		vertices.put((byte)((light >> 4) * 17)).put((byte)((light & 15) * 17)).put((byte)(occlusion * 85)).put((byte)0);
+	}
+}
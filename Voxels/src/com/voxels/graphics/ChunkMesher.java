@@ -0,0 +1,313 @@
+package com.voxels.graphics;
+
+import com.voxels.Block;
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+import com.voxels.Chunk;
+import com.voxels.graphics.BlockTextureData.BlockFace;
+
+// Builds merged (greedy) quads for the exposed faces of a Chunk, or of a coarser copy of one. Does not
+// touch OpenGL, but keeps scratch state, so each thread needs its own ChunkMesher.
+public class ChunkMesher {
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+	private static final Side[] SIDES = Side.values();
+	private static final int FACE_COUNT = BlockFace.values().length;
+	// Where the corner shading and light are kept in the mask, above the BlockType and face
+	private static final int OCCLUSION_SHIFT = 8;
+	private static final int LIGHT_SHIFT = 16;
+	private static final int MATERIAL_MASK = (1 << OCCLUSION_SHIFT) - 1;
+	// Corner of each vertex of a side's quad (bit 0 set at the high end of the slice's u axis, bit 1 at
+	// the high end of v), in the order emitQuad finds them
+	private static final int[][] VERTEX_CORNERS = {
+		{ 2, 3, 1, 0 },
+		{ 3, 2, 0, 1 },
+		{ 1, 3, 2, 0 },
+		{ 3, 1, 0, 2 },
+		{ 0, 2, 3, 1 },
+		{ 1, 3, 2, 0 },
+	};
+	
+	// Face material of each cell in the current slice (0 for no face), with the shading of its four corners
+	// and the light the face gets in the upper bits, so only faces that look the same are merged
+	private int[] mask = new int[SIZE * SIZE];
+	private int[] position = new int[3];
+	private int[] low = new int[3];
+	private int[] high = new int[3];
+	// Range of cells being meshed on each axis
+	private int[] start = new int[3];
+	private int[] end = new int[3];
+	// Blocks each cell of the source covers on a side
+	private int scale = 1;
+	// Corners of the quad being emitted, in order around it
+	private float[] cornerX = new float[4];
+	private float[] cornerY = new float[4];
+	private float[] cornerZ = new float[4];
+	private float[] cornerU = new float[4];
+	private float[] cornerV = new float[4];
+	
+	// Build the faces of the whole Chunk, or of all of a coarser copy of one
+	public void build(MeshSource source, ChunkMesh mesh) {
+		build(source, mesh, 0, source.getSize());
+	}
+	
+	// Build the faces of one horizontal section of the Chunk
+	public void buildSection(Chunk chunk, ChunkMesh mesh, int section) {
+		build(chunk, mesh, section * Chunk.SECTION_HEIGHT, (section + 1) * Chunk.SECTION_HEIGHT);
+	}
+	
+	private void build(MeshSource source, ChunkMesh mesh, int startY, int endY) {
+		mesh.clear();
+		
+		int size = source.getSize();
+		scale = SIZE / size;
+		start[0] = 0;
+		start[1] = startY;
+		start[2] = 0;
+		end[0] = size;
+		end[1] = endY;
+		end[2] = size;
+		
+		for (Side side : SIDES) {
+			buildSide(source, mesh, side);
+		}
+	}
+	
+	private void buildSide(MeshSource source, ChunkMesh mesh, Side side) {
+		// The axis the side faces along, and the two axes spanning the slice
+		int normalAxis = side.dx != 0 ? 0 : (side.dy != 0 ? 1 : 2);
+		int uAxis = (normalAxis + 1) % 3;
+		int vAxis = (normalAxis + 2) % 3;
+		int startU = start[uAxis];
+		int endU = end[uAxis];
+		int startV = start[vAxis];
+		int endV = end[vAxis];
+		
+		for (int slice = start[normalAxis]; slice < end[normalAxis]; ++slice) {
+			position[normalAxis] = slice;
+			
+			// Find the exposed faces in the slice
+			for (int v = startV; v < endV; ++v) {
+				position[vAxis] = v;
+				
+				for (int u = startU; u < endU; ++u) {
+					position[uAxis] = u;
+					
+					BlockType type = source.getBlock(position[0], position[1], position[2]);
+					
+					if (type != BlockType.Air && source.isFaceVisible(position[0], position[1], position[2], side)) {
+						// A face is lit by the cell it looks into, and shaded by the cells around that one
+						mask[u + v * SIZE] = source.getNeighbourLight(position[0], position[1], position[2], side) << LIGHT_SHIFT
+								| getOcclusion(source, side, uAxis, vAxis) << OCCLUSION_SHIFT
+								| type.ordinal() * FACE_COUNT + side.face.ordinal() + 1;
+					} else {
+						mask[u + v * SIZE] = 0;
+					}
+				}
+			}
+			
+			// Merge equal faces into rectangles, widest first
+			for (int v = startV; v < endV; ++v) {
+				for (int u = startU; u < endU; ) {
+					int material = mask[u + v * SIZE];
+					
+					if (material == 0) {
+						++u;
+						continue;
+					}
+					
+					// Extend the rectangle along u
+					int width = 1;
+					while (u + width < endU && mask[u + width + v * SIZE] == material) {
+						++width;
+					}
+					
+					// Extend the rectangle along v while the whole row matches
+					int height = 1;
+					while (v + height < endV && rowMatches(u, v + height, width, material)) {
+						++height;
+					}
+					
+					// Clear the merged faces from the mask
+					for (int row = 0; row < height; ++row) {
+						for (int column = 0; column < width; ++column) {
+							mask[u + column + (v + row) * SIZE] = 0;
+						}
+					}
+					
+					// Calculate the merged box in Block units
+					low[normalAxis] = slice;
+					high[normalAxis] = slice + 1;
+					low[uAxis] = u;
+					high[uAxis] = u + width;
+					low[vAxis] = v;
+					high[vAxis] = v + height;
+					
+					emitQuad(mesh, side, ((material & MATERIAL_MASK) - 1) / FACE_COUNT, material >>> LIGHT_SHIFT, (material >>> OCCLUSION_SHIFT) & 0xFF);
+					
+					u += width;
+				}
+			}
+		}
+	}
+	
+	// Get how much light reaches each corner of the face of the cell at position (3 for all, 0 for none),
+	// two bits per corner, from the three cells that touch the corner around the one the face looks into
+	private int getOcclusion(MeshSource source, Side side, int uAxis, int vAxis) {
+		int x = position[0] + side.dx;
+		int y = position[1] + side.dy;
+		int z = position[2] + side.dz;
+		int occlusion = 0;
+		
+		for (int corner = 0; corner < 4; ++corner) {
+			int du = (corner & 1) * 2 - 1;
+			int dv = (corner >> 1) * 2 - 1;
+			int ux = uAxis == 0 ? du : 0;
+			int uy = uAxis == 1 ? du : 0;
+			int uz = uAxis == 2 ? du : 0;
+			int vx = vAxis == 0 ? dv : 0;
+			int vy = vAxis == 1 ? dv : 0;
+			int vz = vAxis == 2 ? dv : 0;
+			
+			boolean sideU = source.isOccluding(x + ux, y + uy, z + uz);
+			boolean sideV = source.isOccluding(x + vx, y + vy, z + vz);
+			
+			// Two sides hide the corner completely, whatever is between them
+			int light;
+			if (sideU && sideV) {
+				light = 0;
+			} else {
+				boolean diagonal = source.isOccluding(x + ux + vx, y + uy + vy, z + uz + vz);
+				light = 3 - (sideU ? 1 : 0) - (sideV ? 1 : 0) - (diagonal ? 1 : 0);
+			}
+			
+			occlusion |= light << (corner * 2);
+		}
+		
+		return occlusion;
+	}
+	
+	private boolean rowMatches(int u, int v, int width, int material) {
+		for (int column = 0; column < width; ++column) {
+			if (mask[u + column + v * SIZE] != material) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private void emitQuad(ChunkMesh mesh, Side side, int typeOrdinal, int light, int occlusion) {
+		// Cells of a coarser copy are several Blocks on a side
+		float cellSize = scale * Block.DEFAULT_SIZE;
+		float x0 = low[0] * cellSize;
+		float y0 = low[1] * cellSize;
+		float z0 = low[2] * cellSize;
+		float x1 = high[0] * cellSize;
+		float y1 = high[1] * cellSize;
+		float z1 = high[2] * cellSize;
+		
+		// Get the atlas tile of the face, or its layer of the texture array (which needs no corner or size)
+		float tileU;
+		float tileV;
+		float tileSize;
+		if (BlockAtlas.isLayered()) {
+			tileU = BlockAtlas.getLayer(typeOrdinal, side.face.ordinal());
+			tileV = 0;
+			tileSize = 1;
+		} else {
+			float[] atlas = BlockAtlas.getTable();
+			int entry = BlockAtlas.index(typeOrdinal, side.face.ordinal());
+			tileU = atlas[entry];
+			tileV = atlas[entry + 1];
+			tileSize = atlas[entry + 2] - atlas[entry];
+		}
+		
+		// Find the corners top left, top right, bottom right, bottom left; the tile-local
+		// coordinates count Blocks so the shader can repeat the tile across the quad
+		switch (side) {
+		case Front: {
+			float width = (high[0] - low[0]) * scale;
+			float height = (high[1] - low[1]) * scale;
+			corner(0, x0, y1, z1, 0, 0);
+			corner(1, x1, y1, z1, width, 0);
+			corner(2, x1, y0, z1, width, height);
+			corner(3, x0, y0, z1, 0, height);
+			break;
+		}
+		case Back: {
+			float width = (high[0] - low[0]) * scale;
+			float height = (high[1] - low[1]) * scale;
+			corner(0, x1, y1, z0, 0, 0);
+			corner(1, x0, y1, z0, width, 0);
+			corner(2, x0, y0, z0, width, height);
+			corner(3, x1, y0, z0, 0, height);
+			break;
+		}
+		case Left: {
+			float width = (high[2] - low[2]) * scale;
+			float height = (high[1] - low[1]) * scale;
+			corner(0, x0, y1, z0, 0, 0);
+			corner(1, x0, y1, z1, width, 0);
+			corner(2, x0, y0, z1, width, height);
+			corner(3, x0, y0, z0, 0, height);
+			break;
+		}
+		case Right: {
+			float width = (high[2] - low[2]) * scale;
+			float height = (high[1] - low[1]) * scale;
+			corner(0, x1, y1, z1, 0, 0);
+			corner(1, x1, y1, z0, width, 0);
+			corner(2, x1, y0, z0, width, height);
+			corner(3, x1, y0, z1, 0, height);
+			break;
+		}
+		case Top: {
+			float width = (high[0] - low[0]) * scale;
+			float height = (high[2] - low[2]) * scale;
+			corner(0, x0, y1, z0, 0, 0);
+			corner(1, x1, y1, z0, width, 0);
+			corner(2, x1, y1, z1, width, height);
+			corner(3, x0, y1, z1, 0, height);
+			break;
+		}
+		case Bottom: {
+			float width = (high[0] - low[0]) * scale;
+			float height = (high[2] - low[2]) * scale;
+			corner(0, x0, y0, z1, 0, 0);
+			corner(1, x1, y0, z1, width, 0);
+			corner(2, x1, y0, z0, width, height);
+			corner(3, x0, y0, z0, 0, height);
+			break;
+		}
+		}
+		
+		// The quad is split along the diagonal from its first vertex to its third, so start at the second
+		// instead when that puts the split between the darker corners, which keeps the shading symmetric
+		int[] corners = VERTEX_CORNERS[side.ordinal()];
+		int first = 0;
+		if (getCornerLight(occlusion, corners[0]) + getCornerLight(occlusion, corners[2])
+				> getCornerLight(occlusion, corners[1]) + getCornerLight(occlusion, corners[3])) {
+			first = 1;
+		}
+		
+		mesh.beginQuad();
+		
+		for (int vertex = 0; vertex < 4; ++vertex) {
+			int corner = (first + vertex) & 3;
+			mesh.putVertex(cornerX[corner], cornerY[corner], cornerZ[corner], cornerU[corner], cornerV[corner],
+					tileU, tileV, tileSize, light, getCornerLight(occlusion, corners[corner]));
+		}
+	}
+	
+	private void corner(int corner, float x, float y, float z, float localU, float localV) {
+		cornerX[corner] = x;
+		cornerY[corner] = y;
+		cornerZ[corner] = z;
+		cornerU[corner] = localU;
+		cornerV[corner] = localV;
+	}
+	
+	private static int getCornerLight(int occlusion, int corner) {
+		return (occlusion >> (corner * 2)) & 3;
+	}
+}
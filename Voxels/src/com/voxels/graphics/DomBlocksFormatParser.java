@@ -0,0 +1,75 @@
+package com.voxels.graphics;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import com.voxels.Block.BlockType;
+
+// Parses the whole document into a DOM tree first
+public class DomBlocksFormatParser implements BlocksFormatParser {
+	@Override
+	public void parse(InputStream stream) throws IOException {
+		try {
+			// Create a XML document parser for the block data
+			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			
+			// Parse the BlocksFormat.xml file
+			Document blocksFormat = builder.parse(stream);
+			
+			// Get the root element of the document
+			Element root = blocksFormat.getDocumentElement();
+			
+			// Make sure the root element is <Blocks></Blocks>
+			if (root.getNodeName().compareTo("Blocks") != 0) {
+				throw new IOException("The root element must be <Blocks>");
+			}
+			
+			// Get the children (blocks)
+			NodeList childNodes = root.getChildNodes();
+			
+			// Loop through the children blocks
+			for (int index = 0; index < childNodes.getLength(); ++index) {
+				// If the child node is not an element, continue
+				if (childNodes.item(index).getNodeType() != Node.ELEMENT_NODE) {
+					continue;
+				}
+				
+				// Get the block type element node
+				Element childNode = (Element)childNodes.item(index);
+				BlockType type = BlockType.valueOf(childNode.getNodeName());
+				
+				// Get the children (faces)
+				NodeList faceNodes = childNode.getChildNodes();
+				
+				// Loop through the faces of the block type
+				for (int faceIndex = 0; faceIndex < faceNodes.getLength(); ++faceIndex) {
+					// If the child node is not an element, continue
+					if (faceNodes.item(faceIndex).getNodeType() != Node.ELEMENT_NODE) {
+						continue;
+					}
+					
+					// Get the face element node
+					Element faceNode = (Element)faceNodes.item(faceIndex);
+					
+					// Store the texture location data
+					BlockAtlas.set(type, new BlockTextureData(faceNode.getNodeName(),
+							faceNode.getAttribute("xLoc"),
+							faceNode.getAttribute("yLoc"),
+							faceNode.getAttribute("Size")));
+				}
+			}
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException(e);
+		}
+	}
+}
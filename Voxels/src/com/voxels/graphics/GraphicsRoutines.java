@@ -1,39 +1,58 @@
 package com.voxels.graphics;
 
 import static org.lwjgl.opengl.GL11.GL_NEAREST;
+import static org.lwjgl.opengl.GL11.GL_NEAREST_MIPMAP_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_REPEAT;
 import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_RGBA8;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
 import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
 import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
 import static org.lwjgl.opengl.GL11.glBindTexture;
 import static org.lwjgl.opengl.GL11.glGenTextures;
 import static org.lwjgl.opengl.GL11.glMultMatrixf;
 import static org.lwjgl.opengl.GL11.glTexImage2D;
 import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
+import static org.lwjgl.opengl.GL12.glTexImage3D;
+import static org.lwjgl.opengl.GL20.GL_COMPILE_STATUS;
+import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.GL_VERTEX_SHADER;
+import static org.lwjgl.opengl.GL20.glAttachShader;
+import static org.lwjgl.opengl.GL20.glBindAttribLocation;
+import static org.lwjgl.opengl.GL20.glCompileShader;
+import static org.lwjgl.opengl.GL20.glCreateProgram;
+import static org.lwjgl.opengl.GL20.glCreateShader;
+import static org.lwjgl.opengl.GL20.glDeleteShader;
+import static org.lwjgl.opengl.GL20.glGetProgramInfoLog;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL20.glGetShaderInfoLog;
+import static org.lwjgl.opengl.GL20.glGetShaderi;
+import static org.lwjgl.opengl.GL20.glLinkProgram;
+import static org.lwjgl.opengl.GL20.glShaderSource;
+import static org.lwjgl.opengl.GL30.GL_TEXTURE_2D_ARRAY;
 
-import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-
-import javax.imageio.ImageIO;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL30;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import com.voxels.Block;
 
 public class GraphicsRoutines {
-	private static final int BYTES_PER_PIXEL = 4;
-	
 	// Set up a perspective matrix
 	public static void gluPerspective(float fovy, float aspect, float zNear, float zFar) {
 		float sine, cotangent, deltaZ;
@@ -60,100 +79,202 @@ public class GraphicsRoutines {
 		glMultMatrixf(matrix);
 	}
 	
-	public static void loadTextures() throws IOException, ParserConfigurationException {
-		// Load the block textures
-		Block.BLOCK_TEXTURES = loadImage("Blocks.png");
-		
-		// Create a XML document parser for the block data
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		DocumentBuilder builder;
-		builder = factory.newDocumentBuilder();
-		try {
-			// Parse the BlocksFormat.xml file
-			Document blocksFormat = builder.parse(Thread.currentThread().getContextClassLoader().getResourceAsStream("BlocksFormat.xml"));
-
-			// Get the root element of the document
-			Element root = blocksFormat.getDocumentElement();
-			
-			// Make sure the root element is <Blocks></Blocks>
-			if (root.getNodeName().compareTo("Blocks") != 0) {
-				throw new SAXException();
+	public static void loadTextures(AssetCache cache, boolean textureArray) throws IOException {
+		// Stream BlocksFormat.xml by default
+		loadTextures(new StaxBlocksFormatParser(), cache, textureArray);
+	}
+	
+	// Load the block textures and the BlockAtlas, from the cache if given and up to date. With
+	// textureArray, every tile of the sprite sheet becomes a layer of a GL_TEXTURE_2D_ARRAY instead.
+	public static void loadTextures(BlocksFormatParser parser, AssetCache cache, boolean textureArray) throws IOException {
+		long start = System.nanoTime();
+		
+		byte[] image = readResource("Blocks.png");
+		byte[] blocksFormat = readResource("BlocksFormat.xml");
+		
+		// Decode the image and read the block data at the same time, off this thread
+		CompletableFuture<ImageData> decoded = CompletableFuture.supplyAsync(() -> {
+			try {
+				return cache != null ? cache.getImage(image) : ImageData.decode(image);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			
-			// Get the children (blocks)
-			NodeList childNodes = root.getChildNodes();
-			
-			// Loop through the children blocks
-			for (int index = 0; index < childNodes.getLength(); ++index) {
-				// If the child node is not an element, continue
-				if (childNodes.item(index).getNodeType() != Node.ELEMENT_NODE) {
-					continue;
-				}
-				
-				// Get the block type element node
-				Element childNode = (Element)childNodes.item(index);
-				
-				// Create a BlockTexture to store the texture data for the type of block
-				BlockTexture texture = new BlockTexture(childNode.getNodeName());
-				
-				// Get the children (faces)
-				NodeList faceNodes = childNodes.item(index).getChildNodes();
-				
-				// Loop through the faces of the block type
-				for (int faceIndex = 0; faceIndex < faceNodes.getLength(); ++faceIndex) {
-					// If the child node is not an element, continue
-					if (faceNodes.item(faceIndex).getNodeType() != Node.ELEMENT_NODE) {
-						continue;
-					}
-					
-					// Get the face element node
-					Element faceNode = (Element)faceNodes.item(faceIndex);
-					
-					// Store the texture location data
-					texture.addFace(new BlockTextureData(faceNode.getNodeName(),
-							faceNode.getAttribute("xLoc"),
-							faceNode.getAttribute("yLoc"),
-							faceNode.getAttribute("Size")));
+		});
+		CompletableFuture<Void> parsed = CompletableFuture.runAsync(() -> {
+			try {
+				if (cache != null) {
+					cache.loadAtlas(blocksFormat, parser);
+				} else {
+					parser.parse(new ByteArrayInputStream(blocksFormat));
 				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-		} catch (SAXException e) {
+		});
+		
+		ImageData sheet;
+		try {
+			sheet = decoded.join();
+		} catch (CompletionException e) {
+			throw new IOException("Could not load Blocks.png", e.getCause());
+		}
+		
+		try {
+			parsed.join();
+		} catch (CompletionException e) {
 			System.err.println("Could not parse BlocksFormat.xml");
+			e.getCause().printStackTrace(System.err);
 			System.exit(0);
 		}
+		
+		// Upload the texture on this thread, which owns the OpenGL context
+		if (textureArray && loadTextureArray(sheet)) {
+			Block.BLOCK_TEXTURE_TARGET = GL_TEXTURE_2D_ARRAY;
+		} else {
+			Block.BLOCK_TEXTURES = loadTexture(sheet);
+			Block.BLOCK_TEXTURE_TARGET = GL_TEXTURE_2D;
+		}
+		
+		// Report how long loading took, and whether the cache was used
+		System.out.printf("Loaded textures in %.1f ms (%s)%n", (System.nanoTime() - start) / 1e6,
+				cache == null ? "no cache" : cache.getHits() + " cached, " + cache.getMisses() + " decoded");
+	}
+	
+	private static byte[] readResource(String path) throws IOException {
+		try (InputStream stream = Thread.currentThread().getContextClassLoader().getResourceAsStream(path)) {
+			if (stream == null) {
+				throw new IOException("Could not find " + path);
+			}
+			
+			return stream.readAllBytes();
+		}
+	}
+	
+	// Compile and link a shader program, binding the attributes to locations in the given order
+	public static int loadShader(String vertexPath, String fragmentPath, String... attributes) throws IOException {
+		// Compile both stages
+		int vertexShader = compileShader(GL_VERTEX_SHADER, vertexPath);
+		int fragmentShader = compileShader(GL_FRAGMENT_SHADER, fragmentPath);
+		
+		// Create the program from the stages
+		int program = glCreateProgram();
+		glAttachShader(program, vertexShader);
+		glAttachShader(program, fragmentShader);
+		
+		// Bind the attribute locations before linking
+		for (int location = 0; location < attributes.length; ++location) {
+			glBindAttribLocation(program, location, attributes[location]);
+		}
+		
+		glLinkProgram(program);
+		
+		// The stages are no longer needed once linked
+		glDeleteShader(vertexShader);
+		glDeleteShader(fragmentShader);
+		
+		// Make sure the program linked
+		if (glGetProgrami(program, GL_LINK_STATUS) == 0) {
+			throw new IllegalStateException("Failed to link " + vertexPath + " and " + fragmentPath + ": " + glGetProgramInfoLog(program));
+		}
+		
+		return program;
 	}
 	
-	private static int loadImage(String path) throws IOException {
-		// Load the image using the loadTexture method and reading from the path
-		return loadTexture(ImageIO.read(Thread.currentThread().getContextClassLoader().getResource(path)));
+	private static int compileShader(int type, String path) throws IOException {
+		// Read the shader source from the resources
+		String source = new String(readResource(path), StandardCharsets.UTF_8);
+		
+		// Compile the shader
+		int shader = glCreateShader(type);
+		glShaderSource(shader, source);
+		glCompileShader(shader);
+		
+		// Make sure the shader compiled
+		if (glGetShaderi(shader, GL_COMPILE_STATUS) == 0) {
+			throw new IllegalStateException("Failed to compile " + path + ": " + glGetShaderInfoLog(shader));
+		}
+		
+		return shader;
 	}
 	
-	private static int loadTexture(BufferedImage image) {
-		// Set aside an array for the pixels from the image
-		int[] pixels = new int[image.getWidth() * image.getHeight()];
-		
-		// Copy the pixels from the image into the array
-		image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
-		
-		// Create a ByteBuffer for OpenGL to use for the texture
-		ByteBuffer buffer = BufferUtils.createByteBuffer(image.getWidth() * image.getHeight() * BYTES_PER_PIXEL);
-		
-		// Loop through each pixel of the image
-		for (int y = 0; y < image.getHeight(); ++y) {
-			for (int x = 0; x < image.getWidth(); ++x) {
-				// Get the pixel data
-				int pixel = pixels[y * image.getWidth() + x];
-				
-				// Place the different channels as different bytes
-				buffer.put((byte)((pixel >> 16) & 0xFF));
-				buffer.put((byte)((pixel >> 8) & 0xFF));
-				buffer.put((byte)(pixel & 0xFF));
-				buffer.put((byte)((pixel >> 24) & 0xFF));
+	// Split the sprite sheet into a texture array with a layer per tile, each with its own mipmaps so
+	// smaller levels never blend neighbouring tiles. Returns false, loading nothing, if the tiles differ in size.
+	private static boolean loadTextureArray(ImageData sheet) {
+		int[] tiles = BlockAtlas.assignLayers();
+		float[] atlas = BlockAtlas.getTable();
+		
+		if (tiles.length == 0) {
+			System.err.println("No tiles in BlocksFormat.xml, using the sprite sheet");
+			BlockAtlas.clearLayers();
+			return false;
+		}
+		
+		// Cut every tile out of the sprite sheet
+		ImageData[] layers = new ImageData[tiles.length];
+		for (int layer = 0; layer < tiles.length; ++layer) {
+			int entry = tiles[layer];
+			int x = Math.round(atlas[entry] * sheet.getWidth());
+			int y = Math.round(atlas[entry + 1] * sheet.getHeight());
+			int width = Math.round(atlas[entry + 2] * sheet.getWidth()) - x;
+			int height = Math.round(atlas[entry + 3] * sheet.getHeight()) - y;
+			
+			if (layer > 0 && (width != layers[0].getWidth() || height != layers[0].getHeight())) {
+				System.err.println("Tiles in BlocksFormat.xml differ in size, using the sprite sheet");
+				BlockAtlas.clearLayers();
+				return false;
 			}
+			
+			layers[layer] = sheet.getRegion(x, y, width, height);
 		}
 		
-		// Don't forget to flip the buffer
-		buffer.flip();
+		// Obtain a texture id
+		int textureId = glGenTextures();
 		
+		// Set the current texture
+		glBindTexture(GL_TEXTURE_2D_ARRAY, textureId);
+		
+		// Give OpenGL every level of every layer, halving down to a single pixel
+		int width = layers[0].getWidth();
+		int height = layers[0].getHeight();
+		int level = 0;
+		ByteBuffer pixels = BufferUtils.createByteBuffer(width * height * ImageData.BYTES_PER_PIXEL * layers.length);
+		while (true) {
+			pixels.clear();
+			for (ImageData layer : layers) {
+				pixels.put(layer.getPixels());
+			}
+			pixels.flip();
+			
+			glTexImage3D(GL_TEXTURE_2D_ARRAY, level, GL_RGBA8, width, height, layers.length, 0, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+			
+			if (width == 1 && height == 1) {
+				break;
+			}
+			
+			for (int layer = 0; layer < layers.length; ++layer) {
+				layers[layer] = layers[layer].downsample();
+			}
+			width = layers[0].getWidth();
+			height = layers[0].getHeight();
+			++level;
+		}
+		
+		// Set the texture magnification behavior to nearest, and blend between the generated levels when minifying
+		glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+		glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_NEAREST_MIPMAP_LINEAR);
+		glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAX_LEVEL, level);
+		
+		// Repeat each layer, so merged faces tile it without any help from the shader
+		glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_REPEAT);
+		glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_REPEAT);
+		
+		glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+		
+		Block.BLOCK_TEXTURES = textureId;
+		return true;
+	}
+	
+	private static int loadTexture(ImageData image) {
 		// Obtain a texture id
 		int textureId = glGenTextures();
 		
@@ -161,11 +282,15 @@ public class GraphicsRoutines {
 		glBindTexture(GL_TEXTURE_2D, textureId);
 		
 		// Give the texture to OpenGL
-		glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, image.getWidth(), image.getHeight(), 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+		glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, image.getWidth(), image.getHeight(), 0, GL_RGBA, GL_UNSIGNED_BYTE, image.getPixels());
 		
 		// Set the texture magnification behavior to nearest (prevents edge artifacts).
 		glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
 		
+		// Clamp the texture to the edge
+		glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+		glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+		
 		// Generate a mipmap
 		GL30.glGenerateMipmap(GL_TEXTURE_2D);
 		
@@ -0,0 +1,112 @@
+package com.voxels.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.BufferUtils;
+
+// A decoded image as tightly packed RGBA bytes, ready for glTexImage2D
+public class ImageData {
+	public static final int BYTES_PER_PIXEL = 4;
+	
+	private int width = 0;
+	private int height = 0;
+	private ByteBuffer pixels = null;
+	
+	ImageData(int width, int height, ByteBuffer pixels) {
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+	
+	// Decode an image file (anything ImageIO reads)
+	public static ImageData decode(byte[] source) throws IOException {
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(source));
+		
+		if (image == null) {
+			throw new IOException("Unsupported image format");
+		}
+		
+		int width = image.getWidth();
+		int height = image.getHeight();
+		
+		// Copy the pixels from the image as ARGB ints
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		
+		// Swap red and blue, so each int written little-endian is the bytes R, G, B, A
+		for (int index = 0; index < pixels.length; ++index) {
+			int pixel = pixels[index];
+			pixels[index] = (pixel & 0xFF00FF00) | ((pixel >> 16) & 0xFF) | ((pixel & 0xFF) << 16);
+		}
+		
+		// Copy all the pixels across at once
+		ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * BYTES_PER_PIXEL);
+		buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(pixels);
+		
+		return new ImageData(width, height, buffer);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	// Copy out the rectangle of pixels with its top left corner at (x, y)
+	public ImageData getRegion(int x, int y, int regionWidth, int regionHeight) {
+		ByteBuffer region = BufferUtils.createByteBuffer(regionWidth * regionHeight * BYTES_PER_PIXEL);
+		ByteBuffer row = getPixels();
+		
+		for (int line = 0; line < regionHeight; ++line) {
+			int start = ((y + line) * width + x) * BYTES_PER_PIXEL;
+			row.limit(start + regionWidth * BYTES_PER_PIXEL).position(start);
+			region.put(row);
+		}
+		
+		return new ImageData(regionWidth, regionHeight, region.flip());
+	}
+	
+	// Get the next mipmap level: half the size, each pixel the average of the 2x2 pixels it covers
+	// (or of the pixels there are, along an odd or single-pixel edge)
+	public ImageData downsample() {
+		int halfWidth = Math.max(width / 2, 1);
+		int halfHeight = Math.max(height / 2, 1);
+		ByteBuffer half = BufferUtils.createByteBuffer(halfWidth * halfHeight * BYTES_PER_PIXEL);
+		
+		for (int y = 0; y < halfHeight; ++y) {
+			int y0 = Math.min(y * 2, height - 1);
+			int y1 = Math.min(y * 2 + 1, height - 1);
+			
+			for (int x = 0; x < halfWidth; ++x) {
+				int x0 = Math.min(x * 2, width - 1);
+				int x1 = Math.min(x * 2 + 1, width - 1);
+				
+				for (int channel = 0; channel < BYTES_PER_PIXEL; ++channel) {
+					int sum = getChannel(x0, y0, channel) + getChannel(x1, y0, channel)
+							+ getChannel(x0, y1, channel) + getChannel(x1, y1, channel);
+					
+					// Round to the nearest value
+					half.put((byte)((sum + 2) / 4));
+				}
+			}
+		}
+		
+		return new ImageData(halfWidth, halfHeight, half.flip());
+	}
+	
+	private int getChannel(int x, int y, int channel) {
+		return pixels.get((y * width + x) * BYTES_PER_PIXEL + channel) & 0xFF;
+	}
+	
+	// Get the pixels, positioned at zero and limited to the end of the data
+	public ByteBuffer getPixels() {
+		return pixels.duplicate().clear();
+	}
+}
@@ -0,0 +1,13 @@
+package com.voxels.graphics;
+
+// The uploaded (GPU side) copy of a ChunkMesh, owned by a MeshUploader
+public class MeshBuffer {
+	int vertexArray = 0;
+	int vertexBuffer = 0;
+	int capacity = 0;
+	int quadCount = 0;
+	
+	public int getQuadCount() {
+		return quadCount;
+	}
+}
@@ -0,0 +1,22 @@
+package com.voxels.graphics;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+
+// Cells a ChunkMesher builds faces for: the Blocks of a Chunk, or a coarser copy of them for drawing
+// it far away. Coordinates are in cells, from 0 to getSize() - 1 inside the source.
+public interface MeshSource {
+	// Get the number of cells along each axis; each cell covers CHUNK_SIZE / getSize() Blocks on a side
+	int getSize();
+	
+	BlockType getBlock(int x, int y, int z);
+	
+	// Whether the side of the cell at x, y, z is exposed
+	boolean isFaceVisible(int x, int y, int z, Side side);
+	
+	// Get the packed light of the cell next to x, y, z on the given side (sky light in the high nibble)
+	int getNeighbourLight(int x, int y, int z, Side side);
+	
+	// Whether the cell at x, y, z, up to one cell outside the source, darkens the corners of the faces next to it
+	boolean isOccluding(int x, int y, int z);
+}
@@ -0,0 +1,13 @@
+package com.voxels.graphics;
+
+// Moves ChunkMeshes to wherever they are drawn from, so meshing can run without a GL context
+public interface MeshUploader {
+	MeshBuffer create();
+	
+	// Replace the contents of the buffer with the mesh
+	void upload(MeshBuffer buffer, ChunkMesh mesh);
+	
+	void draw(MeshBuffer buffer);
+	
+	void delete(MeshBuffer buffer);
+}
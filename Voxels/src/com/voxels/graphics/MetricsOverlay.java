@@ -0,0 +1,113 @@
+package com.voxels.graphics;
+
+import static org.lwjgl.opengl.GL11.*;
+
+import com.voxels.metrics.FrameMetrics;
+import com.voxels.metrics.FrameMetrics.Phase;
+import com.voxels.metrics.Histogram;
+
+// Draws the recent frames as a bar graph in the corner of the screen with the fixed function
+// pipeline: one bar per frame, stacked by phase, with lines at 60 and 30 frames per second.
+public class MetricsOverlay {
+	private static final Phase[] PHASES = Phase.values();
+	// Colour of each phase's part of the bars
+	private static final float[][] COLOURS = {
+		{ 0.2f, 0.6f, 1.0f },
+		{ 1.0f, 0.8f, 0.2f },
+		{ 0.2f, 0.9f, 0.3f },
+		{ 0.9f, 0.3f, 0.9f },
+		{ 1.0f, 0.5f, 0.1f },
+	};
+	private static final float PIXELS_PER_MILLISECOND = 4;
+	private static final float BAR_WIDTH = 2;
+	private static final float MARGIN = 10;
+	
+	private int width = 0;
+	private int height = 0;
+	
+	public MetricsOverlay(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+	
+	public void draw(FrameMetrics metrics) {
+		// Draw in window pixels, on top of the scene, without textures or shaders
+		glMatrixMode(GL_PROJECTION);
+		glPushMatrix();
+		glLoadIdentity();
+		glOrtho(0, width, height, 0, -1, 1);
+		glMatrixMode(GL_MODELVIEW);
+		glPushMatrix();
+		glLoadIdentity();
+		glDisable(GL_DEPTH_TEST);
+		glDisable(GL_TEXTURE_2D);
+		
+		Histogram frames = metrics.getFrameTimes();
+		int count = Math.min(frames.getCount(), (int)((width - MARGIN * 2) / BAR_WIDTH));
+		float bottom = height - MARGIN;
+		
+		glBegin(GL_QUADS);
+		
+		// Draw the newest frame on the right
+		for (int age = 0; age < count; ++age) {
+			float right = width - MARGIN - age * BAR_WIDTH;
+			float left = right - BAR_WIDTH;
+			float top = bottom;
+			
+			// Stack the phases of the frame
+			for (Phase phase : PHASES) {
+				float milliseconds = metrics.getPhaseTimes(phase).getRecent(age) / 1e3f;
+				float base = top;
+				top -= milliseconds * PIXELS_PER_MILLISECOND;
+				
+				float[] colour = COLOURS[phase.ordinal()];
+				glColor3f(colour[0], colour[1], colour[2]);
+				quad(left, top, right, base);
+			}
+			
+			// The rest of the frame went to waiting (for v-sync, the GPU or the simulation's lock)
+			float frameTop = bottom - frames.getRecent(age) / 1e3f * PIXELS_PER_MILLISECOND;
+			if (frameTop < top) {
+				glColor3f(0.4f, 0.4f, 0.4f);
+				quad(left, frameTop, right, top);
+			}
+		}
+		
+		// Mark the latest frame red if the garbage collector ran in it
+		if (metrics.hasCollected()) {
+			glColor3f(1, 0, 0);
+			quad(width - MARGIN - BAR_WIDTH, bottom, width - MARGIN, bottom + MARGIN / 2);
+		}
+		
+		glEnd();
+		
+		// Draw the frame budgets
+		glBegin(GL_LINES);
+		glColor3f(1, 1, 1);
+		line(bottom - 1000f / 60 * PIXELS_PER_MILLISECOND);
+		glColor3f(1, 0.3f, 0.3f);
+		line(bottom - 1000f / 30 * PIXELS_PER_MILLISECOND);
+		glEnd();
+		
+		// Put everything back for the scene
+		glColor3f(1, 1, 1);
+		glEnable(GL_TEXTURE_2D);
+		glEnable(GL_DEPTH_TEST);
+		glPopMatrix();
+		glMatrixMode(GL_PROJECTION);
+		glPopMatrix();
+		glMatrixMode(GL_MODELVIEW);
+	}
+	
+	private static void quad(float left, float top, float right, float bottom) {
+		glVertex2f(left, top);
+		glVertex2f(right, top);
+		glVertex2f(right, bottom);
+		glVertex2f(left, bottom);
+	}
+	
+	private void line(float y) {
+		glVertex2f(MARGIN, y);
+		glVertex2f(width - MARGIN, y);
+	}
+}
@@ -0,0 +1,24 @@
+package com.voxels.graphics;
+
+// Keeps meshes on the CPU and draws nothing, for running without a GL context
+public class NullMeshUploader implements MeshUploader {
+	@Override
+	public MeshBuffer create() {
+		return new MeshBuffer();
+	}
+	
+	@Override
+	public void upload(MeshBuffer buffer, ChunkMesh mesh) {
+		buffer.quadCount = mesh.getQuadCount();
+	}
+	
+	@Override
+	public void draw(MeshBuffer buffer) {
+	
+	}
+	
+	@Override
+	public void delete(MeshBuffer buffer) {
+		buffer.quadCount = 0;
+	}
+}
@@ -0,0 +1,58 @@
+package com.voxels.graphics;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.voxels.Block.BlockType;
+
+// Streams through the document without building a tree, so parsing time and memory only
+// grow with the number of faces
+public class StaxBlocksFormatParser implements BlocksFormatParser {
+	@Override
+	public void parse(InputStream stream) throws IOException {
+		try {
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(stream);
+			
+			try {
+				// Make sure the root element is <Blocks></Blocks>
+				reader.nextTag();
+				if (!reader.getLocalName().equals("Blocks")) {
+					throw new IOException("The root element must be <Blocks>");
+				}
+				
+				// Elements one level down are block types, two levels down are their faces
+				BlockType type = null;
+				int depth = 1;
+				
+				while (reader.hasNext()) {
+					int event = reader.next();
+					
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						++depth;
+						
+						if (depth == 2) {
+							type = BlockType.valueOf(reader.getLocalName());
+						} else if (depth == 3) {
+							// Store the texture location data
+							BlockAtlas.set(type, new BlockTextureData(reader.getLocalName(),
+									reader.getAttributeValue(null, "xLoc"),
+									reader.getAttributeValue(null, "yLoc"),
+									reader.getAttributeValue(null, "Size")));
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						--depth;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+}
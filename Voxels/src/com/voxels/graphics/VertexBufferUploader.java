@@ -0,0 +1,139 @@
+package com.voxels.graphics;
+
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL11.glDrawElements;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30.glBindVertexArray;
+import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
+import static org.lwjgl.opengl.GL30.glGenVertexArrays;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.BufferUtils;
+
+// Uploads meshes into a vertex buffer object per Chunk, drawn through a vertex array object
+public class VertexBufferUploader implements MeshUploader {
+	private static final int INDICES_PER_QUAD = 6;
+	
+	// Quad indices shared by every Chunk (two triangles per quad)
+	private int indexBuffer = 0;
+	private int indexedQuads = 0;
+	
+	@Override
+	public MeshBuffer create() {
+		MeshBuffer buffer = new MeshBuffer();
+		
+		// Create the vertex array and the vertex buffer it reads from
+		buffer.vertexArray = glGenVertexArrays();
+		buffer.vertexBuffer = glGenBuffers();
+		
+		if (indexBuffer == 0) {
+			indexBuffer = glGenBuffers();
+		}
+		
+		glBindVertexArray(buffer.vertexArray);
+		glBindBuffer(GL_ARRAY_BUFFER, buffer.vertexBuffer);
+		
+		// Describe the vertex layout
+		glEnableVertexAttribArray(ChunkMesh.POSITION_ATTRIBUTE);
+		glVertexAttribPointer(ChunkMesh.POSITION_ATTRIBUTE, 3, GL_FLOAT, false, ChunkMesh.VERTEX_SIZE, ChunkMesh.POSITION_OFFSET);
+		glEnableVertexAttribArray(ChunkMesh.LOCAL_ATTRIBUTE);
+		glVertexAttribPointer(ChunkMesh.LOCAL_ATTRIBUTE, 2, GL_FLOAT, false, ChunkMesh.VERTEX_SIZE, ChunkMesh.LOCAL_OFFSET);
+		glEnableVertexAttribArray(ChunkMesh.TILE_ATTRIBUTE);
+		glVertexAttribPointer(ChunkMesh.TILE_ATTRIBUTE, 3, GL_FLOAT, false, ChunkMesh.VERTEX_SIZE, ChunkMesh.TILE_OFFSET);
+		glEnableVertexAttribArray(ChunkMesh.LIGHT_ATTRIBUTE);
+		glVertexAttribPointer(ChunkMesh.LIGHT_ATTRIBUTE, 4, GL_UNSIGNED_BYTE, true, ChunkMesh.VERTEX_SIZE, ChunkMesh.LIGHT_OFFSET);
+		
+		// The vertex array remembers the index buffer binding
+		glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+		
+		glBindVertexArray(0);
+		glBindBuffer(GL_ARRAY_BUFFER, 0);
+		
+		return buffer;
+	}
+	
+	@Override
+	public void upload(MeshBuffer buffer, ChunkMesh mesh) {
+		ByteBuffer vertices = mesh.getVertices();
+		
+		// Make sure there are enough shared indices for the mesh
+		ensureIndices(mesh.getQuadCount());
+		
+		glBindBuffer(GL_ARRAY_BUFFER, buffer.vertexBuffer);
+		
+		if (vertices.remaining() > buffer.capacity) {
+			// Round the size up to a power of two, so later edits usually fit in place
+			buffer.capacity = Integer.highestOneBit(vertices.remaining() - 1) << 1;
+		}
+		
+		// Orphan the old storage so the driver doesn't wait on frames still drawing it
+		glBufferData(GL_ARRAY_BUFFER, buffer.capacity, GL_DYNAMIC_DRAW);
+		
+		// Only the mesh data is sent, not the whole capacity
+		glBufferSubData(GL_ARRAY_BUFFER, 0, vertices);
+		glBindBuffer(GL_ARRAY_BUFFER, 0);
+		
+		buffer.quadCount = mesh.getQuadCount();
+	}
+	
+	@Override
+	public void draw(MeshBuffer buffer) {
+		if (buffer.quadCount == 0) {
+			return;
+		}
+		
+		// Draw the whole Chunk in a single call
+		glBindVertexArray(buffer.vertexArray);
+		glDrawElements(GL_TRIANGLES, buffer.quadCount * INDICES_PER_QUAD, GL_UNSIGNED_INT, 0);
+		glBindVertexArray(0);
+	}
+	
+	@Override
+	public void delete(MeshBuffer buffer) {
+		glDeleteBuffers(buffer.vertexBuffer);
+		glDeleteVertexArrays(buffer.vertexArray);
+		
+		buffer.vertexBuffer = 0;
+		buffer.vertexArray = 0;
+		buffer.capacity = 0;
+		buffer.quadCount = 0;
+	}
+	
+	private void ensureIndices(int quads) {
+		if (quads <= indexedQuads) {
+			return;
+		}
+		
+		// Double the index count so it is rarely rebuilt
+		indexedQuads = Math.max(quads, indexedQuads * 2);
+		
+		// Split each quad (top left, top right, bottom right, bottom left) into two triangles
+		IntBuffer indices = BufferUtils.createIntBuffer(indexedQuads * INDICES_PER_QUAD);
+		for (int quad = 0; quad < indexedQuads; ++quad) {
+			int first = quad * ChunkMesh.VERTICES_PER_QUAD;
+			indices.put(first).put(first + 1).put(first + 2);
+			indices.put(first).put(first + 2).put(first + 3);
+		}
+		indices.flip();
+		
+		// Vertex arrays keep referring to the same buffer, so replacing its storage updates all of them
+		glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+		glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+		glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+	}
+}
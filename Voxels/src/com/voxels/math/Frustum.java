@@ -0,0 +1,55 @@
+package com.voxels.math;
+
+// The six planes bounding what a projection * modelview matrix can see, for culling boxes
+// before drawing them. Planes point inwards and are stored as (a, b, c, d) with ax + by + cz + d >= 0 inside.
+public class Frustum {
+    private static final int PLANE_COUNT = 6;
+
+    private final float[] planes = new float[PLANE_COUNT * 4];
+
+    // Extract the planes from a combined projection * modelview matrix (Gribb and Hartmann)
+    public void set(Mat4f matrix) {
+        float[] m = matrix.m;
+
+        // Left, right, bottom, top, near, far: the last row plus or minus each of the others
+        for (int row = 0; row < 3; ++row) {
+            setPlane(row * 2, m[3] + m[row], m[7] + m[4 + row], m[11] + m[8 + row], m[15] + m[12 + row]);
+            setPlane(row * 2 + 1, m[3] - m[row], m[7] - m[4 + row], m[11] - m[8 + row], m[15] - m[12 + row]);
+        }
+    }
+
+    // Whether any part of the axis-aligned box may be visible
+    public boolean intersectsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for (int plane = 0; plane < PLANE_COUNT; ++plane) {
+            float a = planes[plane * 4];
+            float b = planes[plane * 4 + 1];
+            float c = planes[plane * 4 + 2];
+            float d = planes[plane * 4 + 3];
+
+            // Test the corner furthest along the plane's normal; if even that is outside, the whole box is
+            float x = a >= 0 ? maxX : minX;
+            float y = b >= 0 ? maxY : minY;
+            float z = c >= 0 ? maxZ : minZ;
+
+            if (a * x + b * y + c * z + d < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean containsPoint(float x, float y, float z) {
+        return intersectsBox(x, y, z, x, y, z);
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d) {
+        // Normalize, so distances to the planes are comparable
+        float length = (float)Math.sqrt(a * a + b * b + c * c);
+
+        planes[plane * 4] = a / length;
+        planes[plane * 4 + 1] = b / length;
+        planes[plane * 4 + 2] = c / length;
+        planes[plane * 4 + 3] = d / length;
+    }
+}
@@ -0,0 +1,133 @@
+package com.voxels.math;
+
+import java.nio.FloatBuffer;
+
+// 4x4 matrix stored column-major, the same layout OpenGL uses
+public class Mat4f {
+    public final float[] m = new float[16];
+
+    public Mat4f() {
+        identity();
+    }
+
+    public void identity() {
+        for (int i = 0; i < 16; ++i) {
+            m[i] = (i % 5 == 0) ? 1 : 0;
+        }
+    }
+
+    public void set(Mat4f other) {
+        System.arraycopy(other.m, 0, m, 0, 16);
+    }
+
+    // Element at row, column
+    public float get(int row, int column) {
+        return m[column * 4 + row];
+    }
+
+    // Read a matrix, e.g. from glGetFloatv
+    public void load(FloatBuffer buffer) {
+        for (int i = 0; i < 16; ++i) {
+            m[i] = buffer.get(i);
+        }
+    }
+
+    // Write the matrix, e.g. for glLoadMatrixf
+    public void store(FloatBuffer buffer) {
+        for (int i = 0; i < 16; ++i) {
+            buffer.put(i, m[i]);
+        }
+    }
+
+    // Set this to a * b (this may be a or b)
+    public void mul(Mat4f a, Mat4f b) {
+        float[] x = a.m;
+        float[] y = b.m;
+
+        float m00 = x[0] * y[0] + x[4] * y[1] + x[8] * y[2] + x[12] * y[3];
+        float m10 = x[1] * y[0] + x[5] * y[1] + x[9] * y[2] + x[13] * y[3];
+        float m20 = x[2] * y[0] + x[6] * y[1] + x[10] * y[2] + x[14] * y[3];
+        float m30 = x[3] * y[0] + x[7] * y[1] + x[11] * y[2] + x[15] * y[3];
+        float m01 = x[0] * y[4] + x[4] * y[5] + x[8] * y[6] + x[12] * y[7];
+        float m11 = x[1] * y[4] + x[5] * y[5] + x[9] * y[6] + x[13] * y[7];
+        float m21 = x[2] * y[4] + x[6] * y[5] + x[10] * y[6] + x[14] * y[7];
+        float m31 = x[3] * y[4] + x[7] * y[5] + x[11] * y[6] + x[15] * y[7];
+        float m02 = x[0] * y[8] + x[4] * y[9] + x[8] * y[10] + x[12] * y[11];
+        float m12 = x[1] * y[8] + x[5] * y[9] + x[9] * y[10] + x[13] * y[11];
+        float m22 = x[2] * y[8] + x[6] * y[9] + x[10] * y[10] + x[14] * y[11];
+        float m32 = x[3] * y[8] + x[7] * y[9] + x[11] * y[10] + x[15] * y[11];
+        float m03 = x[0] * y[12] + x[4] * y[13] + x[8] * y[14] + x[12] * y[15];
+        float m13 = x[1] * y[12] + x[5] * y[13] + x[9] * y[14] + x[13] * y[15];
+        float m23 = x[2] * y[12] + x[6] * y[13] + x[10] * y[14] + x[14] * y[15];
+        float m33 = x[3] * y[12] + x[7] * y[13] + x[11] * y[14] + x[15] * y[15];
+
+        m[0] = m00; m[1] = m10; m[2] = m20; m[3] = m30;
+        m[4] = m01; m[5] = m11; m[6] = m21; m[7] = m31;
+        m[8] = m02; m[9] = m12; m[10] = m22; m[11] = m32;
+        m[12] = m03; m[13] = m13; m[14] = m23; m[15] = m33;
+    }
+
+    public void transpose() {
+        for (int row = 0; row < 4; ++row) {
+            for (int column = row + 1; column < 4; ++column) {
+                float temp = m[column * 4 + row];
+                m[column * 4 + row] = m[row * 4 + column];
+                m[row * 4 + column] = temp;
+            }
+        }
+    }
+
+    // Set this to the same perspective projection as GraphicsRoutines.gluPerspective
+    public void setPerspective(float fovy, float aspect, float zNear, float zFar) {
+        float radians = fovy / 2 * 3.14f / 180;
+        float cotangent = (float)Math.cos(radians) / (float)Math.sin(radians);
+        float deltaZ = zFar - zNear;
+
+        for (int i = 0; i < 16; ++i) {
+            m[i] = 0;
+        }
+
+        m[0 * 4 + 0] = cotangent / aspect;
+        m[1 * 4 + 1] = cotangent;
+        m[2 * 4 + 2] = -(zFar + zNear) / deltaZ;
+        m[2 * 4 + 3] = -1;
+        m[3 * 4 + 2] = -2 * zNear * zFar / deltaZ;
+        m[3 * 4 + 3] = 0;
+    }
+
+    // Multiply by a rotation of angle degrees around the axis, like glRotatef
+    public void rotate(float angle, float x, float y, float z) {
+        float length = (float)Math.sqrt(x * x + y * y + z * z);
+        x /= length;
+        y /= length;
+        z /= length;
+
+        float radians = (float)Math.toRadians(angle);
+        float c = (float)Math.cos(radians);
+        float s = (float)Math.sin(radians);
+        float t = 1 - c;
+
+        // Rotation columns
+        float r00 = t * x * x + c, r10 = t * x * y + s * z, r20 = t * x * z - s * y;
+        float r01 = t * x * y - s * z, r11 = t * y * y + c, r21 = t * y * z + s * x;
+        float r02 = t * x * z + s * y, r12 = t * y * z - s * x, r22 = t * z * z + c;
+
+        // this = this * rotation, one row at a time
+        for (int row = 0; row < 4; ++row) {
+            float a = m[row];
+            float b = m[4 + row];
+            float d = m[8 + row];
+
+            m[row] = a * r00 + b * r10 + d * r20;
+            m[4 + row] = a * r01 + b * r11 + d * r21;
+            m[8 + row] = a * r02 + b * r12 + d * r22;
+        }
+    }
+
+    // Multiply by a translation, like glTranslatef
+    public void translate(float x, float y, float z) {
+        for (int row = 0; row < 4; ++row) {
+            m[12 + row] += m[row] * x + m[4 + row] * y + m[8 + row] * z;
+        }
+    }
+}
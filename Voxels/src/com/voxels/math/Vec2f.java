@@ -13,4 +13,9 @@ public class Vec2f {
         this.x = x;
         this.y = y;
     }
+
+    public void set(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
 }
@@ -17,18 +17,77 @@ public class Vec3f {
         this.z = z;
     }
 
+    public void set(float x, float y, float z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public void set(Vec3f other) {
+        this.x = other.x;
+        this.y = other.y;
+        this.z = other.z;
+    }
+
     public void add(Vec3f other) {
         this.x += other.x;
         this.y += other.y;
         this.z += other.z;
     }
 
+    public void sub(Vec3f other) {
+        this.x -= other.x;
+        this.y -= other.y;
+        this.z -= other.z;
+    }
+
+    // Add other scaled by scalar, without changing other
+    public void addScaled(Vec3f other, float scalar) {
+        this.x += other.x * scalar;
+        this.y += other.y * scalar;
+        this.z += other.z * scalar;
+    }
+
+    // Set this to the point t of the way from a to b
+    public void lerp(Vec3f a, Vec3f b, float t) {
+        this.x = a.x + (b.x - a.x) * t;
+        this.y = a.y + (b.y - a.y) * t;
+        this.z = a.z + (b.z - a.z) * t;
+    }
+
     public void mul(float scalar) {
         this.x *= scalar;
         this.y *= scalar;
         this.z *= scalar;
     }
 
+    // Transform this as a point (w = 1) by the matrix
+    public void mulMat4(Mat4f matrix) {
+        float[] m = matrix.m;
+        float tx = m[0] * x + m[4] * y + m[8] * z + m[12];
+        float ty = m[1] * x + m[5] * y + m[9] * z + m[13];
+        float tz = m[2] * x + m[6] * y + m[10] * z + m[14];
+
+        set(tx, ty, tz);
+    }
+
+    public float dot(Vec3f other) {
+        return x * other.x + y * other.y + z * other.z;
+    }
+
+    // Set this to a cross b (this may be a or b)
+    public void cross(Vec3f a, Vec3f b) {
+        float cx = a.y * b.z - a.z * b.y;
+        float cy = a.z * b.x - a.x * b.z;
+        float cz = a.x * b.y - a.y * b.x;
+
+        set(cx, cy, cz);
+    }
+
+    public float lengthSquared() {
+        return x*x + y*y + z*z;
+    }
+
     public float length() {
         return (float)Math.sqrt(x*x + y*y + z*z);
     }
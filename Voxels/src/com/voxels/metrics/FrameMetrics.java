@@ -0,0 +1,261 @@
+package com.voxels.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Records where the time of each frame goes, what it drew, and what the garbage collector did, keeping
+// rolling histograms of the recent frames and a snapshot of them every few seconds. Only the render
+// thread may use it.
+public class FrameMetrics {
+	// What the render thread does in a frame, in the order it does it
+	public enum Phase {
+		Update,
+		Raycast,
+		Mesh,
+		Upload,
+		Render,
+	}
+	
+	private static final Phase[] PHASES = Phase.values();
+	// Frames kept in the rolling histograms (a few seconds' worth)
+	public static final int HISTORY = 512;
+	
+	// Names of the values in each snapshot; times are in milliseconds
+	private static final String[] COLUMNS = {
+		"seconds", "frames", "fps",
+		"frame_p50", "frame_p90", "frame_p99", "frame_max",
+		"update_mean", "update_p99", "raycast_mean", "raycast_p99", "mesh_mean", "mesh_p99",
+		"upload_mean", "upload_p99", "render_mean", "render_p99",
+		"draw_calls", "vertices", "chunks_meshed",
+		"gc_count", "gc_ms", "allocated_mb_per_second",
+	};
+	
+	private long startTime = 0;
+	private long frameStart = 0;
+	private long snapshotNanos = 0;
+	
+	// Frame and phase times in microseconds
+	private Histogram frameTimes = new Histogram(HISTORY);
+	private Histogram[] phaseTimes = new Histogram[PHASES.length];
+	private long[] phaseNanos = new long[PHASES.length];
+	
+	// Totals since the last snapshot
+	private long lastSnapshot = 0;
+	private int frames = 0;
+	private long drawCalls = 0;
+	private long vertices = 0;
+	private long chunksMeshed = 0;
+	private long gcCount = 0;
+	private long gcMillis = 0;
+	private long allocatedBytes = 0;
+	
+	// Collector and allocation totals at the end of the last frame
+	private List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+	private long collections = 0;
+	private long collectionMillis = 0;
+	private com.sun.management.ThreadMXBean allocations = null;
+	private long threadId = 0;
+	private long allocated = 0;
+	// Whether the last frame had a collection, for the overlay
+	private boolean collected = false;
+	
+	private List<double[]> snapshots = new ArrayList<double[]>();
+	
+	public FrameMetrics(long now, float snapshotSeconds) {
+		startTime = now;
+		frameStart = now;
+		lastSnapshot = now;
+		snapshotNanos = (long)(snapshotSeconds * 1e9);
+		
+		for (Phase phase : PHASES) {
+			phaseTimes[phase.ordinal()] = new Histogram(HISTORY);
+		}
+		
+		// Count the bytes this thread allocates, where the JVM can
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			allocations = (com.sun.management.ThreadMXBean)threads;
+			threadId = Thread.currentThread().getId();
+			
+			if (!allocations.isThreadAllocatedMemoryEnabled()) {
+				allocations = null;
+			}
+		}
+		
+		// Only count what happens from the first frame on
+		for (GarbageCollectorMXBean collector : collectors) {
+			collections += Math.max(collector.getCollectionCount(), 0);
+			collectionMillis += Math.max(collector.getCollectionTime(), 0);
+		}
+		allocated = allocations != null ? allocations.getThreadAllocatedBytes(threadId) : 0;
+	}
+	
+	// Add time spent in a phase this frame
+	public void add(Phase phase, long nanos) {
+		phaseNanos[phase.ordinal()] += nanos;
+	}
+	
+	// Finish the frame that started at the end of the last one
+	public void endFrame(long now, int frameDrawCalls, int frameVertices, int frameChunksMeshed) {
+		frameTimes.record((now - frameStart) / 1000);
+		frameStart = now;
+		
+		for (Phase phase : PHASES) {
+			phaseTimes[phase.ordinal()].record(phaseNanos[phase.ordinal()] / 1000);
+			phaseNanos[phase.ordinal()] = 0;
+		}
+		
+		++frames;
+		drawCalls += frameDrawCalls;
+		vertices += frameVertices;
+		chunksMeshed += frameChunksMeshed;
+		
+		// Find what the collectors did during the frame
+		long previousCount = gcCount;
+		pollCollectors();
+		collected = gcCount != previousCount;
+		
+		if (allocations != null) {
+			long total = allocations.getThreadAllocatedBytes(threadId);
+			allocatedBytes += total - allocated;
+			allocated = total;
+		}
+		
+		if (now - lastSnapshot >= snapshotNanos) {
+			snapshot(now);
+		}
+	}
+	
+	private void pollCollectors() {
+		long count = 0;
+		long millis = 0;
+		
+		for (GarbageCollectorMXBean collector : collectors) {
+			// Collectors report -1 for what they don't track
+			count += Math.max(collector.getCollectionCount(), 0);
+			millis += Math.max(collector.getCollectionTime(), 0);
+		}
+		
+		gcCount += count - collections;
+		gcMillis += millis - collectionMillis;
+		collections = count;
+		collectionMillis = millis;
+	}
+	
+	// Record the frames since the last snapshot, and start counting again
+	private void snapshot(long now) {
+		double seconds = (now - lastSnapshot) / 1e9;
+		
+		double[] values = {
+			(now - startTime) / 1e9, frames, frames / seconds,
+			frameTimes.getPercentile(0.5) / 1e3, frameTimes.getPercentile(0.9) / 1e3,
+			frameTimes.getPercentile(0.99) / 1e3, frameTimes.getMax() / 1e3,
+			0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+			(double)drawCalls / frames, (double)vertices / frames, chunksMeshed,
+			gcCount, gcMillis, allocations != null ? allocatedBytes / 1e6 / seconds : -1,
+		};
+		
+		// Fill in the mean and 99th percentile of each phase
+		for (Phase phase : PHASES) {
+			Histogram times = phaseTimes[phase.ordinal()];
+			values[7 + phase.ordinal() * 2] = times.getMean() / 1e3;
+			values[8 + phase.ordinal() * 2] = times.getPercentile(0.99) / 1e3;
+		}
+		
+		snapshots.add(values);
+		
+		lastSnapshot = now;
+		frames = 0;
+		drawCalls = 0;
+		vertices = 0;
+		chunksMeshed = 0;
+		gcCount = 0;
+		gcMillis = 0;
+		allocatedBytes = 0;
+	}
+	
+	public Histogram getFrameTimes() {
+		return frameTimes;
+	}
+	
+	public Histogram getPhaseTimes(Phase phase) {
+		return phaseTimes[phase.ordinal()];
+	}
+	
+	public boolean hasCollected() {
+		return collected;
+	}
+	
+	public int getSnapshotCount() {
+		return snapshots.size();
+	}
+	
+	// Write every snapshot so far, as JSON if the file name ends in .json and as CSV otherwise
+	public void write(Path path, long now) throws IOException {
+		// Include the frames since the last snapshot
+		if (frames > 0) {
+			snapshot(now);
+		}
+		
+		boolean json = path.getFileName().toString().endsWith(".json");
+		
+		try (BufferedWriter out = Files.newBufferedWriter(path)) {
+			if (json) {
+				writeJson(out);
+			} else {
+				writeCsv(out);
+			}
+		}
+	}
+	
+	private void writeCsv(BufferedWriter out) throws IOException {
+		out.write(String.join(",", COLUMNS));
+		out.newLine();
+		
+		for (double[] values : snapshots) {
+			for (int column = 0; column < values.length; ++column) {
+				if (column > 0) {
+					out.write(',');
+				}
+				out.write(format(values[column]));
+			}
+			out.newLine();
+		}
+	}
+	
+	private void writeJson(BufferedWriter out) throws IOException {
+		out.write('[');
+		
+		for (int snapshot = 0; snapshot < snapshots.size(); ++snapshot) {
+			double[] values = snapshots.get(snapshot);
+			
+			out.write(snapshot > 0 ? ",\n  {" : "\n  {");
+			for (int column = 0; column < values.length; ++column) {
+				if (column > 0) {
+					out.write(", ");
+				}
+				out.write('"' + COLUMNS[column] + "\": " + format(values[column]));
+			}
+			out.write('}');
+		}
+		
+		out.write("\n]\n");
+	}
+	
+	private static String format(double value) {
+		// Keep whole numbers whole, and everything else to the microsecond
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long)value);
+		}
+		
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+}
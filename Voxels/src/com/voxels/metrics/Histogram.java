@@ -0,0 +1,117 @@
+package com.voxels.metrics;
+
+// Rolling histogram over the last few samples, with buckets laid out like HdrHistogram: exact up to
+// 2^PRECISION_BITS, then 2^(PRECISION_BITS - 1) buckets per power of two, so every recorded value is
+// within 1/64 of its bucket whatever its size. Recording and evicting are constant time.
+public class Histogram {
+	private static final int PRECISION_BITS = 7;
+	private static final int HALF_BUCKETS = 1 << (PRECISION_BITS - 1);
+	// Values are clamped to the largest long the buckets cover
+	private static final int BUCKET_COUNT = bucket(Long.MAX_VALUE) + 1;
+	
+	private int[] counts = new int[BUCKET_COUNT];
+	// The samples in the window, oldest first from next once it has wrapped around
+	private long[] window = null;
+	private int next = 0;
+	private int size = 0;
+	private long max = 0;
+	
+	public Histogram(int windowSize) {
+		window = new long[windowSize];
+	}
+	
+	static int bucket(long value) {
+		if (value < (1 << PRECISION_BITS)) {
+			return (int)value;
+		}
+		
+		// Keep the top PRECISION_BITS bits of the value
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (PRECISION_BITS - 1);
+		
+		return shift * HALF_BUCKETS + (int)(value >>> shift);
+	}
+	
+	// Get the largest value that falls in the bucket
+	static long highestValue(int bucket) {
+		if (bucket < (1 << PRECISION_BITS)) {
+			return bucket;
+		}
+		
+		int shift = bucket / HALF_BUCKETS - 1;
+		long mantissa = bucket - shift * HALF_BUCKETS;
+		
+		return ((mantissa + 1) << shift) - 1;
+	}
+	
+	public void record(long value) {
+		value = Math.max(value, 0);
+		
+		// Forget the oldest sample once the window is full
+		if (size == window.length) {
+			--counts[bucket(window[next])];
+		} else {
+			++size;
+		}
+		
+		window[next] = value;
+		next = (next + 1) % window.length;
+		++counts[bucket(value)];
+		
+		max = -1;
+	}
+	
+	public int getCount() {
+		return size;
+	}
+	
+	// Get the value that the given fraction (0 to 1) of the samples are at or below
+	public long getPercentile(double fraction) {
+		if (size == 0) {
+			return 0;
+		}
+		
+		int rank = Math.max(1, (int)Math.ceil(fraction * size));
+		int seen = 0;
+		
+		for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket) {
+			seen += counts[bucket];
+			
+			// The bucket's top can be past every sample in it
+			if (seen >= rank) {
+				return Math.min(highestValue(bucket), getMax());
+			}
+		}
+		
+		return getMax();
+	}
+	
+	public long getMax() {
+		// Find the largest sample again after the window moved
+		if (max < 0) {
+			max = 0;
+			for (int sample = 0; sample < size; ++sample) {
+				max = Math.max(max, window[sample]);
+			}
+		}
+		
+		return max;
+	}
+	
+	public double getMean() {
+		if (size == 0) {
+			return 0;
+		}
+		
+		long sum = 0;
+		for (int sample = 0; sample < size; ++sample) {
+			sum += window[sample];
+		}
+		
+		return (double)sum / size;
+	}
+	
+	// Get a recent sample, 0 being the latest
+	public long getRecent(int age) {
+		return window[Math.floorMod(next - 1 - age, window.length)];
+	}
+}
@@ -0,0 +1,105 @@
+package com.voxels.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Chunk;
+
+// Run-length encodes a Chunk's Blocks: runs of (variable length count, BlockType ordinal) in index order
+public class ChunkCodec {
+	private static final byte VERSION = 1;
+	private static final BlockType[] BLOCK_TYPES = BlockType.values();
+	
+	// Largest encoding: the version, then a run for every Block (two count bytes and a type byte)
+	public static final int MAX_ENCODED_SIZE = 1 + Chunk.CHUNK_VOLUME * 3;
+	
+	private ChunkCodec() {
+	
+	}
+	
+	public static void encode(Chunk chunk, ByteBuffer out) {
+		out.put(VERSION);
+		
+		int start = 0;
+		while (start < Chunk.CHUNK_VOLUME) {
+			BlockType type = chunk.getBlock(start);
+			
+			// Find the end of the run
+			int end = start + 1;
+			while (end < Chunk.CHUNK_VOLUME && chunk.getBlock(end) == type) {
+				++end;
+			}
+			
+			putVarInt(out, end - start);
+			out.put((byte)type.ordinal());
+			
+			start = end;
+		}
+	}
+	
+	// Fill a Chunk of Air from an encoded copy. The whole record is checked before any of it is
+	// written, so a truncated or corrupt one leaves the Chunk as it was.
+	public static void decode(ByteBuffer in, Chunk chunk) throws IOException {
+		read(in.duplicate(), null);
+		read(in, chunk);
+	}
+	
+	// Read the runs, setting them in the Chunk unless it is null
+	private static void read(ByteBuffer in, Chunk chunk) throws IOException {
+		if (getByte(in) != VERSION) {
+			throw new IOException("Unknown chunk format");
+		}
+		
+		int start = 0;
+		while (start < Chunk.CHUNK_VOLUME) {
+			int length = getVarInt(in);
+			int ordinal = getByte(in);
+			
+			// Make sure the run fits in the Chunk and names a real BlockType
+			if (length <= 0 || start + length > Chunk.CHUNK_VOLUME || ordinal < 0 || ordinal >= BLOCK_TYPES.length) {
+				throw new IOException("Corrupt chunk data");
+			}
+			
+			// Air is already there
+			if (chunk != null && BLOCK_TYPES[ordinal] != BlockType.Air) {
+				chunk.setBlocks(start, start + length, BLOCK_TYPES[ordinal]);
+			}
+			
+			start += length;
+		}
+	}
+	
+	private static byte getByte(ByteBuffer in) throws IOException {
+		if (!in.hasRemaining()) {
+			throw new IOException("Truncated chunk data");
+		}
+		
+		return in.get();
+	}
+	
+	private static void putVarInt(ByteBuffer out, int value) {
+		// Seven bits at a time, with the high bit set on all but the last byte
+		while ((value & ~0x7F) != 0) {
+			out.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		
+		out.put((byte)value);
+	}
+	
+	private static int getVarInt(ByteBuffer in) throws IOException {
+		int value = 0;
+		
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte next = getByte(in);
+			value |= (next & 0x7F) << shift;
+			
+			if ((next & 0x80) == 0) {
+				return value;
+			}
+		}
+		
+		throw new IOException("Corrupt chunk data");
+	}
+}
@@ -0,0 +1,138 @@
+package com.voxels.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+// A file holding a REGION_SIZE x REGION_SIZE square of Chunks. The first sector is an offset
+// table (sector offset << 8 | sector count per Chunk, 0 when absent), mapped into memory; each
+// Chunk is stored as its length followed by its encoded data, starting on a sector boundary.
+class RegionFile {
+	static final int REGION_SIZE = 32;
+	static final int SECTOR_SIZE = 4096;
+	private static final int MAX_SECTORS = 0xFF;
+	
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	// Sectors in use, so rewritten Chunks can reuse the space of moved ones
+	private final BitSet usedSectors = new BitSet();
+	private final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+	
+	RegionFile(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		
+		// Write an empty offset table into a new file
+		if (channel.size() < SECTOR_SIZE) {
+			channel.write(ByteBuffer.allocate(SECTOR_SIZE), 0);
+		}
+		
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, SECTOR_SIZE);
+		
+		// Mark the offset table and every stored Chunk as used
+		usedSectors.set(0);
+		for (int entry = 0; entry < REGION_SIZE * REGION_SIZE; ++entry) {
+			int location = header.getInt(entry * Integer.BYTES);
+			
+			if (location != 0) {
+				usedSectors.set(location >>> 8, (location >>> 8) + (location & MAX_SECTORS));
+			}
+		}
+	}
+	
+	// Read a Chunk's encoded data, or return null if it was never written
+	synchronized ByteBuffer read(int localX, int localZ) throws IOException {
+		int location = header.getInt(entryOffset(localX, localZ));
+		
+		if (location == 0) {
+			return null;
+		}
+		
+		long position = (long)(location >>> 8) * SECTOR_SIZE;
+		int capacity = (location & MAX_SECTORS) * SECTOR_SIZE - Integer.BYTES;
+		
+		// Read the length of the data
+		length.clear();
+		channel.read(length, position);
+		int size = length.getInt(0);
+		
+		if (size < 0 || size > capacity) {
+			throw new IOException("Corrupt region file entry " + localX + ", " + localZ);
+		}
+		
+		// Read the data itself
+		ByteBuffer data = ByteBuffer.allocate(size);
+		while (data.hasRemaining()) {
+			if (channel.read(data, position + Integer.BYTES + data.position()) < 0) {
+				throw new IOException("Truncated region file entry " + localX + ", " + localZ);
+			}
+		}
+		data.flip();
+		
+		return data;
+	}
+	
+	synchronized void write(int localX, int localZ, ByteBuffer data) throws IOException {
+		int offset = entryOffset(localX, localZ);
+		int location = header.getInt(offset);
+		int sectors = (Integer.BYTES + data.remaining() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+		int sector = location >>> 8;
+		
+		if (sectors > MAX_SECTORS) {
+			throw new IOException("Chunk data too large: " + data.remaining() + " bytes");
+		}
+		
+		// Reuse the old sectors if the data still fits, otherwise move the Chunk
+		if (location == 0 || (location & MAX_SECTORS) < sectors) {
+			if (location != 0) {
+				usedSectors.clear(sector, sector + (location & MAX_SECTORS));
+			}
+			
+			sector = findFreeSectors(sectors);
+		} else {
+			usedSectors.clear(sector + sectors, sector + (location & MAX_SECTORS));
+		}
+		
+		usedSectors.set(sector, sector + sectors);
+		
+		// Write the length and the data
+		long position = (long)sector * SECTOR_SIZE;
+		length.clear();
+		length.putInt(0, data.remaining());
+		channel.write(length, position);
+		
+		position += Integer.BYTES;
+		while (data.hasRemaining()) {
+			position += channel.write(data, position);
+		}
+		
+		// Point the offset table at the new location
+		header.putInt(offset, (sector << 8) | sectors);
+	}
+	
+	synchronized void close() throws IOException {
+		header.force();
+		channel.close();
+	}
+	
+	private int findFreeSectors(int count) {
+		// Take the first gap that is large enough (there is always room past the end)
+		int start = usedSectors.nextClearBit(1);
+		while (true) {
+			int end = usedSectors.nextSetBit(start);
+			
+			if (end < 0 || end - start >= count) {
+				return start;
+			}
+			
+			start = usedSectors.nextClearBit(end);
+		}
+	}
+	
+	private static int entryOffset(int localX, int localZ) {
+		return (localX + localZ * REGION_SIZE) * Integer.BYTES;
+	}
+}
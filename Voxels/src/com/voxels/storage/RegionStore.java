@@ -0,0 +1,171 @@
+package com.voxels.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Chunk;
+
+// Saves and loads Chunks in region files under a directory. Saves are queued and written in
+// batches on a single writer thread; loads may come from any thread.
+public class RegionStore {
+	private static final int SHIFT = Integer.numberOfTrailingZeros(RegionFile.REGION_SIZE);
+	private static final int MASK = RegionFile.REGION_SIZE - 1;
+	
+	private final Path directory;
+	private final HashMap<Long, RegionFile> regions = new HashMap<Long, RegionFile>();
+	// Chunks waiting to be written, by packed Chunk coordinates
+	private final ConcurrentHashMap<Long, Chunk> unsaved = new ConcurrentHashMap<Long, Chunk>();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private final ExecutorService writer;
+	// Only used by the writer thread
+	private final ByteBuffer encoded = ByteBuffer.allocate(ChunkCodec.MAX_ENCODED_SIZE);
+	
+	public RegionStore(Path directory) throws IOException {
+		this(directory, Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Region writer");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+	
+	// Write on the given single thread executor, so tests can hold writes back
+	RegionStore(Path directory, ExecutorService writer) throws IOException {
+		this.directory = directory;
+		this.writer = writer;
+		Files.createDirectories(directory);
+	}
+	
+	// Fill the Chunk from its saved copy, or return false if it was never saved
+	public boolean load(Chunk chunk) {
+		// A copy still waiting to be written is newer than the file
+		Chunk waiting = unsaved.get(chunkKey(chunk));
+		if (waiting != null) {
+			for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+				chunk.setBlock(index, waiting.getBlock(index));
+			}
+			
+			chunk.setModified(false);
+			return true;
+		}
+		
+		try {
+			RegionFile region = getRegion(chunk, false);
+			
+			if (region == null) {
+				return false;
+			}
+			
+			ByteBuffer data = region.read(chunk.getX() & MASK, chunk.getZ() & MASK);
+			
+			if (data == null) {
+				return false;
+			}
+			
+			ChunkCodec.decode(data, chunk);
+			chunk.setModified(false);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			// Fall back to regenerating the Chunk, from nothing but Air
+			System.err.println("Could not load chunk " + chunk.getX() + ", " + chunk.getY() + ", " + chunk.getZ() + ": " + e);
+			chunk.setBlocks(0, Chunk.CHUNK_VOLUME, BlockType.Air);
+			chunk.setModified(false);
+			return false;
+		}
+	}
+	
+	// Queue the Chunk to be written; it must not change afterwards
+	public void save(Chunk chunk) {
+		unsaved.put(chunkKey(chunk), chunk);
+		chunk.setModified(false);
+		
+		// Start a batch unless one is already waiting to run
+		if (flushScheduled.compareAndSet(false, true)) {
+			writer.execute(this::flush);
+		}
+	}
+	
+	// Write everything queued and close the region files
+	public void close() {
+		writer.execute(this::flush);
+		writer.shutdown();
+		
+		try {
+			writer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		synchronized (regions) {
+			for (RegionFile region : regions.values()) {
+				try {
+					region.close();
+				} catch (IOException e) {
+					System.err.println("Could not close region file: " + e.getMessage());
+				}
+			}
+			
+			regions.clear();
+		}
+	}
+	
+	private void flush() {
+		// Let saves from now on schedule the next batch
+		flushScheduled.set(false);
+		
+		for (Map.Entry<Long, Chunk> entry : unsaved.entrySet()) {
+			Chunk chunk = entry.getValue();
+			
+			try {
+				encoded.clear();
+				ChunkCodec.encode(chunk, encoded);
+				encoded.flip();
+				
+				getRegion(chunk, true).write(chunk.getX() & MASK, chunk.getZ() & MASK, encoded);
+			} catch (IOException e) {
+				System.err.println("Could not save chunk " + chunk.getX() + ", " + chunk.getY() + ", " + chunk.getZ() + ": " + e.getMessage());
+			}
+			
+			// Keep the entry if the Chunk was saved again while writing
+			unsaved.remove(entry.getKey(), chunk);
+		}
+	}
+	
+	private RegionFile getRegion(Chunk chunk, boolean create) throws IOException {
+		int regionX = chunk.getX() >> SHIFT;
+		int regionZ = chunk.getZ() >> SHIFT;
+		
+		// Each layer of Chunks has its own regions
+		long key = ((long)(regionX & 0x1FFFFF) << 42) | ((long)(chunk.getY() & 0x1FFFFF) << 21) | (regionZ & 0x1FFFFF);
+		
+		synchronized (regions) {
+			RegionFile region = regions.get(key);
+			
+			if (region == null) {
+				Path path = directory.resolve("r." + regionX + "." + chunk.getY() + "." + regionZ + ".vxr");
+				
+				if (!create && !Files.exists(path)) {
+					return null;
+				}
+				
+				region = new RegionFile(path);
+				regions.put(key, region);
+			}
+			
+			return region;
+		}
+	}
+	
+	private static long chunkKey(Chunk chunk) {
+		return ((long)(chunk.getX() & 0x1FFFFF) << 42) | ((long)(chunk.getY() & 0x1FFFFF) << 21) | (chunk.getZ() & 0x1FFFFF);
+	}
+}
@@ -0,0 +1,30 @@
+package com.voxels.storage;
+
+import com.voxels.Chunk;
+import com.voxels.terrain.TerrainGenerator;
+
+// Loads saved Chunks, generating only the ones that were never saved
+public class StoredTerrainGenerator implements TerrainGenerator {
+	private final RegionStore store;
+	private final TerrainGenerator generator;
+	
+	public StoredTerrainGenerator(RegionStore store, TerrainGenerator generator) {
+		this.store = store;
+		this.generator = generator;
+	}
+	
+	@Override
+	public void generate(Chunk chunk) {
+		if (!store.load(chunk)) {
+			generator.generate(chunk);
+			
+			// Generated terrain can be made again from the seed, so only edits to it need saving
+			chunk.setModified(false);
+		}
+	}
+	
+	@Override
+	public int getSurfaceHeight(int x, int z) {
+		return generator.getSurfaceHeight(x, z);
+	}
+}
@@ -0,0 +1,84 @@
+package com.voxels.terrain;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Chunk;
+
+// Rolling hills from layered simplex noise, with a second noise picking between grassland and desert
+public class NoiseTerrainGenerator implements TerrainGenerator {
+	private static final int BASE_HEIGHT = 8;
+	private static final int HEIGHT_VARIATION = 24;
+	private static final double HEIGHT_SCALE = 1.0 / 128;
+	private static final int HEIGHT_OCTAVES = 4;
+	private static final double BIOME_SCALE = 1.0 / 512;
+	// Biome noise above which columns are desert
+	private static final double DESERT_THRESHOLD = 0.35;
+	// Columns at or below this height get beaches
+	private static final int SHORE_HEIGHT = 0;
+	// How deep the surface Block type goes
+	private static final int SURFACE_DEPTH = 3;
+	
+	private final SimplexNoise heightNoise;
+	private final SimplexNoise biomeNoise;
+	
+	public NoiseTerrainGenerator(long seed) {
+		heightNoise = new SimplexNoise(seed);
+		biomeNoise = new SimplexNoise(seed * 31 + 17);
+	}
+	
+	@Override
+	public void generate(Chunk chunk) {
+		int originX = chunk.getX() * Chunk.CHUNK_SIZE;
+		int originY = chunk.getY() * Chunk.CHUNK_SIZE;
+		int originZ = chunk.getZ() * Chunk.CHUNK_SIZE;
+		
+		// Chunks entirely above the highest possible surface stay Air
+		if (originY > BASE_HEIGHT + HEIGHT_VARIATION) {
+			return;
+		}
+		
+		// Work out each column once, then fill it from the bottom up
+		for (int z = 0; z < Chunk.CHUNK_SIZE; ++z) {
+			for (int x = 0; x < Chunk.CHUNK_SIZE; ++x) {
+				int height = getSurfaceHeight(originX + x, originZ + z);
+				BlockType surface = getSurfaceType(originX + x, originZ + z, height);
+				
+				// Nothing but Air in this column of the Chunk
+				int top = Math.min(height - originY, Chunk.CHUNK_SIZE - 1);
+				
+				for (int y = 0; y <= top; ++y) {
+					int depth = height - (originY + y);
+					
+					if (depth == 0) {
+						chunk.setBlock(x, y, z, surface);
+					} else if (depth < SURFACE_DEPTH && surface == BlockType.Sand) {
+						// Sand goes a few Blocks deep
+						chunk.setBlock(x, y, z, BlockType.Sand);
+					} else {
+						chunk.setBlock(x, y, z, BlockType.Dirt);
+					}
+				}
+			}
+		}
+	}
+	
+	@Override
+	public int getSurfaceHeight(int x, int z) {
+		double noise = heightNoise.fractal(x * HEIGHT_SCALE, z * HEIGHT_SCALE, HEIGHT_OCTAVES);
+		
+		return BASE_HEIGHT + (int)Math.floor(noise * HEIGHT_VARIATION);
+	}
+	
+	private BlockType getSurfaceType(int x, int z, int height) {
+		// Low ground is beach
+		if (height <= SHORE_HEIGHT) {
+			return BlockType.Sand;
+		}
+		
+		// Otherwise the biome decides
+		if (biomeNoise.noise(x * BIOME_SCALE, z * BIOME_SCALE) > DESERT_THRESHOLD) {
+			return BlockType.Sand;
+		}
+		
+		return BlockType.Grass;
+	}
+}
@@ -0,0 +1,106 @@
+package com.voxels.terrain;
+
+import java.util.Random;
+
+// Seeded 2D simplex noise (after Stefan Gustavson's reference implementation).
+// Immutable once created, so one instance can be shared between threads.
+public class SimplexNoise {
+	private static final double SKEW = 0.5 * (Math.sqrt(3) - 1);
+	private static final double UNSKEW = (3 - Math.sqrt(3)) / 6;
+	
+	// Gradient directions, picked per lattice point through the permutation
+	private static final double[] GRADIENT_X = { 1, -1, 1, -1, 1, -1, 0, 0 };
+	private static final double[] GRADIENT_Y = { 1, 1, -1, -1, 0, 0, 1, -1 };
+	
+	private final short[] permutation = new short[512];
+	
+	public SimplexNoise(long seed) {
+		short[] shuffled = new short[256];
+		for (short index = 0; index < 256; ++index) {
+			shuffled[index] = index;
+		}
+		
+		// Shuffle the lattice hashes with the seed
+		Random random = new Random(seed);
+		for (int index = 255; index > 0; --index) {
+			int swap = random.nextInt(index + 1);
+			short temp = shuffled[index];
+			shuffled[index] = shuffled[swap];
+			shuffled[swap] = temp;
+		}
+		
+		// Repeat the table so lookups never need wrapping
+		for (int index = 0; index < 512; ++index) {
+			permutation[index] = shuffled[index & 255];
+		}
+	}
+	
+	// Get the noise at a point, in the range [-1, 1]
+	public double noise(double x, double y) {
+		// Find the simplex cell containing the point
+		double skew = (x + y) * SKEW;
+		int i = fastFloor(x + skew);
+		int j = fastFloor(y + skew);
+		double unskew = (i + j) * UNSKEW;
+		double x0 = x - (i - unskew);
+		double y0 = y - (j - unskew);
+		
+		// Find which of the two triangles of the cell the point is in
+		int i1 = x0 > y0 ? 1 : 0;
+		int j1 = x0 > y0 ? 0 : 1;
+		
+		// Offsets to the other two corners
+		double x1 = x0 - i1 + UNSKEW;
+		double y1 = y0 - j1 + UNSKEW;
+		double x2 = x0 - 1 + 2 * UNSKEW;
+		double y2 = y0 - 1 + 2 * UNSKEW;
+		
+		int ii = i & 255;
+		int jj = j & 255;
+		
+		// Sum the contributions of the three corners
+		double total = corner(permutation[ii + permutation[jj]], x0, y0)
+				+ corner(permutation[ii + i1 + permutation[jj + j1]], x1, y1)
+				+ corner(permutation[ii + 1 + permutation[jj + 1]], x2, y2);
+		
+		// Scale the result to [-1, 1]
+		return 70 * total;
+	}
+	
+	// Sum octaves of noise, each twice the frequency and half the amplitude of the last
+	public double fractal(double x, double y, int octaves) {
+		double total = 0;
+		double amplitude = 1;
+		double range = 0;
+		
+		for (int octave = 0; octave < octaves; ++octave) {
+			total += noise(x, y) * amplitude;
+			range += amplitude;
+			
+			x *= 2;
+			y *= 2;
+			amplitude *= 0.5;
+		}
+		
+		return total / range;
+	}
+	
+	private static double corner(int hash, double x, double y) {
+		double falloff = 0.5 - x * x - y * y;
+		
+		if (falloff < 0) {
+			return 0;
+		}
+		
+		int gradient = hash & 7;
+		falloff *= falloff;
+		
+		return falloff * falloff * (GRADIENT_X[gradient] * x + GRADIENT_Y[gradient] * y);
+	}
+	
+	private static int fastFloor(double value) {
+		int truncated = (int)value;
+		
+		return value < truncated ? truncated - 1 : truncated;
+	}
+}
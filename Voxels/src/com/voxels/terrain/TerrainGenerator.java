@@ -0,0 +1,12 @@
+package com.voxels.terrain;
+
+import com.voxels.Chunk;
+
+// Fills new Chunks with Blocks. Called from the chunk worker threads, so implementations
+// must be safe to use from several threads at once.
+public interface TerrainGenerator {
+	void generate(Chunk chunk);
+	
+	// Get the world Block y of the highest solid Block in a column
+	int getSurfaceHeight(int x, int z);
+}
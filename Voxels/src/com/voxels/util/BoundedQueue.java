@@ -0,0 +1,77 @@
+package com.voxels.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Fixed capacity lock-free queue for any number of producers and consumers (Vyukov's bounded
+// queue). Each slot has a sequence number telling whether it is ready to be written or read.
+public class BoundedQueue<T> {
+	private final AtomicReferenceArray<T> elements;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	
+	public BoundedQueue(int capacity) {
+		if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		
+		elements = new AtomicReferenceArray<T>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		mask = capacity - 1;
+		
+		// Every slot starts writable for the first lap
+		for (int slot = 0; slot < capacity; ++slot) {
+			sequences.set(slot, slot);
+		}
+	}
+	
+	public int capacity() {
+		return mask + 1;
+	}
+	
+	// Add an element, or return false if the queue is full
+	public boolean offer(T element) {
+		while (true) {
+			long position = tail.get();
+			int slot = (int)position & mask;
+			long difference = sequences.get(slot) - position;
+			
+			if (difference == 0) {
+				// The slot is free for this lap; claim it
+				if (tail.compareAndSet(position, position + 1)) {
+					elements.set(slot, element);
+					sequences.set(slot, position + 1);
+					return true;
+				}
+			} else if (difference < 0) {
+				// The slot still holds an element from the previous lap
+				return false;
+			}
+		}
+	}
+	
+	// Remove the oldest element, or return null if the queue is empty
+	public T poll() {
+		while (true) {
+			long position = head.get();
+			int slot = (int)position & mask;
+			long difference = sequences.get(slot) - (position + 1);
+			
+			if (difference == 0) {
+				// The slot has been written for this lap; claim it
+				if (head.compareAndSet(position, position + 1)) {
+					T element = elements.get(slot);
+					elements.set(slot, null);
+					sequences.set(slot, position + mask + 1);
+					return element;
+				}
+			} else if (difference < 0) {
+				// Nothing has been written to the slot yet
+				return null;
+			}
+		}
+	}
+}
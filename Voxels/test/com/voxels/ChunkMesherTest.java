@@ -0,0 +1,84 @@
+package com.voxels;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+import com.voxels.graphics.ChunkMesh;
+import com.voxels.graphics.ChunkMesher;
+
+// Meshing whole Chunks without a GL context, counting the merged quads
+public class ChunkMesherTest {
+	private final ChunkMesher mesher = new ChunkMesher();
+	private final ChunkMesh mesh = new ChunkMesh();
+	
+	@Test
+	public void solidChunkInAirIsSixQuads() {
+		Chunk chunk = new Chunk(0, 0, 0);
+		chunk.setBlocks(0, Chunk.CHUNK_VOLUME, BlockType.Dirt);
+		surround(chunk, new Chunk(0, 0, 0));
+		
+		mesher.build(chunk, mesh);
+		
+		assertEquals(6, mesh.getQuadCount());
+	}
+	
+	@Test
+	public void halfFullChunkOnGroundIsFiveQuads() {
+		Chunk chunk = new Chunk(0, 0, 0);
+		// Fill the bottom half, a row of z at a time
+		for (int z = 0; z < Chunk.CHUNK_SIZE; ++z) {
+			chunk.setBlocks(Chunk.index(0, 0, z), Chunk.index(0, Chunk.CHUNK_SIZE / 2, z), BlockType.Dirt);
+		}
+		
+		Chunk ground = new Chunk(0, -1, 0);
+		ground.setBlocks(0, Chunk.CHUNK_VOLUME, BlockType.Dirt);
+		surround(chunk, new Chunk(0, 0, 0));
+		chunk.captureBorder(Side.Bottom, ground);
+		
+		mesher.build(chunk, mesh);
+		
+		// The top and the four sides, with the bottom hidden by the ground
+		assertEquals(5, mesh.getQuadCount());
+	}
+	
+	@Test
+	public void emptyChunkHasNoQuads() {
+		Chunk chunk = new Chunk(0, 0, 0);
+		surround(chunk, new Chunk(0, 0, 0));
+		
+		mesher.build(chunk, mesh);
+		
+		assertEquals(0, mesh.getQuadCount());
+	}
+	
+	@Test
+	public void solidChunkWithoutNeighboursHasNoQuads() {
+		Chunk chunk = new Chunk(0, 0, 0);
+		chunk.setBlocks(0, Chunk.CHUNK_VOLUME, BlockType.Dirt);
+		
+		mesher.build(chunk, mesh);
+		
+		// Sides facing Chunks that aren't loaded stay hidden
+		assertEquals(0, mesh.getQuadCount());
+	}
+	
+	// Capture the same Chunk as every neighbour, across the sides, edges and corners
+	private static void surround(Chunk chunk, Chunk neighbour) {
+		for (Side side : Side.values()) {
+			chunk.captureBorder(side, neighbour);
+		}
+		
+		for (int dz = -1; dz <= 1; ++dz) {
+			for (int dy = -1; dy <= 1; ++dy) {
+				for (int dx = -1; dx <= 1; ++dx) {
+					if (Chunk.isEdge(dx, dy, dz)) {
+						chunk.captureEdge(dx, dy, dz, neighbour);
+					}
+				}
+			}
+		}
+	}
+}
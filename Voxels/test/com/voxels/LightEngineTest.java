@@ -0,0 +1,221 @@
+package com.voxels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Block.Side;
+import com.voxels.graphics.RecordingMeshUploader;
+import com.voxels.math.Vec3f;
+import com.voxels.terrain.NoiseTerrainGenerator;
+import com.voxels.terrain.TerrainGenerator;
+
+// Checking the light kept up to date as Chunks load and Blocks change against lighting the
+// whole World again from scratch
+public class LightEngineTest {
+	private static final long SETTLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+	private static final int EDITS = 3000;
+	private static final int EDITS_PER_CHECK = 500;
+	// How far from the centre Chunk to look for loaded Chunks, past the view distance
+	private static final int SEARCH_DISTANCE = 4;
+	private static final Side[] SIDES = Side.values();
+	
+	private World world = null;
+	private Vec3f position = null;
+	
+	@Before
+	public void load() {
+		Chunk.UPLOADER = new RecordingMeshUploader();
+		
+		TerrainGenerator generator = new NoiseTerrainGenerator(Voxels.WORLD_SEED);
+		world = new World(generator, null, 2, 1, 0, new ChunkWorkers(1, 64), Integer.MAX_VALUE);
+		position = new Vec3f(0, (generator.getSurfaceHeight(0, 0) + 1) * Block.DEFAULT_SIZE, 0);
+		
+		long deadline = System.nanoTime() + SETTLE_NANOS;
+		do {
+			assertTrue("the World did not load", System.nanoTime() < deadline);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			
+			world.update(position);
+		} while (!world.isFullyLoaded());
+	}
+	
+	@After
+	public void unload() {
+		world.delete();
+	}
+	
+	@Test
+	public void loadedLightMatchesFullRecompute() {
+		assertLightMatches("after loading");
+	}
+	
+	@Test
+	public void editedLightMatchesFullRecompute() {
+		Random random = new Random(5);
+		int centerX = World.blockX(position.x);
+		int centerY = World.blockY(position.y);
+		int centerZ = World.blockZ(position.z);
+		
+		// Dig and build around the surface, inside the loaded Chunks
+		for (int edit = 1; edit <= EDITS; ++edit) {
+			int x = centerX + random.nextInt(24) - 12;
+			int y = centerY + random.nextInt(24) - 16;
+			int z = centerZ + random.nextInt(24) - 12;
+			
+			world.setBlock(x, y, z, random.nextInt(3) == 0 ? BlockType.Dirt : BlockType.Air);
+			
+			if (edit % EDITS_PER_CHECK == 0) {
+				assertLightMatches("after " + edit + " edits");
+			}
+		}
+	}
+	
+	// Compare the light byte of every loaded Block with a fresh propagation
+	private void assertLightMatches(String when) {
+		List<Chunk> chunks = getLoadedChunks();
+		assertEquals(world.getLoadedChunks(), chunks.size());
+		IdentityHashMap<Chunk, byte[]> expected = propagate(chunks);
+		
+		for (Chunk chunk : chunks) {
+			byte[] light = expected.get(chunk);
+			
+			for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+				assertEquals("light " + when + " in chunk " + chunk.getX() + ", " + chunk.getY() + ", " + chunk.getZ()
+						+ " at " + index, light[index] & 0xFF, chunk.getLight(index));
+			}
+		}
+	}
+	
+	private List<Chunk> getLoadedChunks() {
+		int centerX = World.blockX(position.x) >> 4;
+		int centerY = World.blockY(position.y) >> 4;
+		int centerZ = World.blockZ(position.z) >> 4;
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		
+		for (int chunkZ = centerZ - SEARCH_DISTANCE; chunkZ <= centerZ + SEARCH_DISTANCE; ++chunkZ) {
+			for (int chunkY = centerY - SEARCH_DISTANCE; chunkY <= centerY + SEARCH_DISTANCE; ++chunkY) {
+				for (int chunkX = centerX - SEARCH_DISTANCE; chunkX <= centerX + SEARCH_DISTANCE; ++chunkX) {
+					Chunk chunk = world.getChunk(chunkX, chunkY, chunkZ);
+					
+					if (chunk != null) {
+						chunks.add(chunk);
+					}
+				}
+			}
+		}
+		
+		return chunks;
+	}
+	
+	// Light the Chunks from nothing: full sky light above the highest solid Block of each column of
+	// loaded Blocks, the light each BlockType gives off, then both spread breadth first through
+	// transparent Blocks, one level less per Block
+	private IdentityHashMap<Chunk, byte[]> propagate(List<Chunk> chunks) {
+		IdentityHashMap<Chunk, byte[]> light = new IdentityHashMap<Chunk, byte[]>();
+		
+		for (Chunk chunk : chunks) {
+			byte[] chunkLight = new byte[Chunk.CHUNK_VOLUME];
+			
+			for (int z = 0; z < Chunk.CHUNK_SIZE; ++z) {
+				for (int x = 0; x < Chunk.CHUNK_SIZE; ++x) {
+					int height = findHighestBlock(chunks, chunk.getX() * Chunk.CHUNK_SIZE + x, chunk.getZ() * Chunk.CHUNK_SIZE + z);
+					
+					for (int y = 0; y < Chunk.CHUNK_SIZE; ++y) {
+						int index = Chunk.index(x, y, z);
+						int sky = chunk.getY() * Chunk.CHUNK_SIZE + y > height ? LightEngine.MAX_LIGHT : 0;
+						
+						chunkLight[index] = (byte)(sky << LightEngine.SKY_SHIFT | chunk.getBlock(index).emission << LightEngine.BLOCK_SHIFT);
+					}
+				}
+			}
+			
+			light.put(chunk, chunkLight);
+		}
+		
+		spread(chunks, light, LightEngine.SKY_SHIFT);
+		spread(chunks, light, LightEngine.BLOCK_SHIFT);
+		
+		return light;
+	}
+	
+	private int findHighestBlock(List<Chunk> chunks, int x, int z) {
+		int highest = Integer.MIN_VALUE;
+		
+		for (Chunk chunk : chunks) {
+			if (chunk.getX() != x >> 4 || chunk.getZ() != z >> 4) {
+				continue;
+			}
+			
+			for (int y = 0; y < Chunk.CHUNK_SIZE; ++y) {
+				if (chunk.getBlock(x & 15, y, z & 15) != BlockType.Air) {
+					highest = Math.max(highest, chunk.getY() * Chunk.CHUNK_SIZE + y);
+				}
+			}
+		}
+		
+		return highest;
+	}
+	
+	private void spread(List<Chunk> chunks, IdentityHashMap<Chunk, byte[]> light, int shift) {
+		ArrayDeque<Chunk> queuedChunks = new ArrayDeque<Chunk>();
+		ArrayDeque<Integer> queuedIndices = new ArrayDeque<Integer>();
+		
+		for (Chunk chunk : chunks) {
+			for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+				if (level(light.get(chunk)[index], shift) > 1) {
+					queuedChunks.add(chunk);
+					queuedIndices.add(index);
+				}
+			}
+		}
+		
+		while (!queuedChunks.isEmpty()) {
+			Chunk chunk = queuedChunks.poll();
+			int index = queuedIndices.poll();
+			int next = level(light.get(chunk)[index], shift) - 1;
+			
+			for (Side side : SIDES) {
+				Chunk neighbour = chunk;
+				int neighbourIndex = Chunk.neighbourIndex(index, side);
+				
+				// Step into the next Chunk across the side, if it is loaded
+				if (neighbourIndex < 0) {
+					neighbour = world.getChunk(chunk.getX() + side.dx, chunk.getY() + side.dy, chunk.getZ() + side.dz);
+					neighbourIndex = Chunk.index((Chunk.indexX(index) + side.dx) & 15, (Chunk.indexY(index) + side.dy) & 15,
+							(Chunk.indexZ(index) + side.dz) & 15);
+				}
+				
+				if (neighbour == null || !neighbour.getBlock(neighbourIndex).isTransparent()) {
+					continue;
+				}
+				
+				byte[] neighbourLight = light.get(neighbour);
+				if (level(neighbourLight[neighbourIndex], shift) < next) {
+					neighbourLight[neighbourIndex] = (byte)(neighbourLight[neighbourIndex] & ~(LightEngine.MAX_LIGHT << shift) | next << shift);
+					
+					if (next > 1) {
+						queuedChunks.add(neighbour);
+						queuedIndices.add(neighbourIndex);
+					}
+				}
+			}
+		}
+	}
+	
+	private static int level(byte light, int shift) {
+		return (light >> shift) & LightEngine.MAX_LIGHT;
+	}
+}
@@ -0,0 +1,46 @@
+package com.voxels;
+
+import java.util.Random;
+
+import com.voxels.Block.BlockType;
+
+// Chunks for tests outside this package, which can't call the Chunk constructor
+public class TestChunks {
+	private static final BlockType[] BLOCK_TYPES = BlockType.values();
+	
+	public static Chunk empty(int chunkX, int chunkY, int chunkZ) {
+		return new Chunk(chunkX, chunkY, chunkZ);
+	}
+	
+	public static Chunk uniform(BlockType type) {
+		Chunk chunk = new Chunk(0, 0, 0);
+		chunk.setBlocks(0, Chunk.CHUNK_VOLUME, type);
+		return chunk;
+	}
+	
+	// Every solid Block surrounded by Air, the most runs possible
+	public static Chunk checkerboard() {
+		Chunk chunk = new Chunk(0, 0, 0);
+		for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+			if (((Chunk.indexX(index) + Chunk.indexY(index) + Chunk.indexZ(index)) & 1) == 0) {
+				chunk.setBlock(index, BlockType.Dirt);
+			}
+		}
+		
+		return chunk;
+	}
+	
+	public static Chunk noisy(long seed) {
+		return noisy(0, 0, 0, seed);
+	}
+	
+	public static Chunk noisy(int chunkX, int chunkY, int chunkZ, long seed) {
+		Chunk chunk = new Chunk(chunkX, chunkY, chunkZ);
+		Random random = new Random(seed);
+		for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+			chunk.setBlock(index, BLOCK_TYPES[random.nextInt(BLOCK_TYPES.length)]);
+		}
+		
+		return chunk;
+	}
+}
@@ -0,0 +1,103 @@
+package com.voxels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.voxels.Block.BlockType;
+import com.voxels.graphics.ChunkMesh;
+import com.voxels.graphics.RecordingMeshUploader;
+import com.voxels.graphics.RecordingMeshUploader.Upload;
+import com.voxels.math.Vec3f;
+import com.voxels.terrain.NoiseTerrainGenerator;
+import com.voxels.terrain.TerrainGenerator;
+
+// Streaming a small World headlessly and checking what it sends to the GPU
+public class WorldTest {
+	private static final long SETTLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+	
+	private RecordingMeshUploader uploader = null;
+	private World world = null;
+	private Vec3f position = null;
+	
+	@Before
+	public void load() {
+		uploader = new RecordingMeshUploader();
+		Chunk.UPLOADER = uploader;
+		
+		TerrainGenerator generator = new NoiseTerrainGenerator(Voxels.WORLD_SEED);
+		world = new World(generator, null, 2, 1, 0, new ChunkWorkers(1, 64), Integer.MAX_VALUE);
+		position = new Vec3f(0, (generator.getSurfaceHeight(0, 0) + 1) * Block.DEFAULT_SIZE, 0);
+		
+		settle();
+	}
+	
+	@After
+	public void unload() {
+		world.delete();
+	}
+	
+	@Test
+	public void singleBlockEditUploadsOnlyItsChunk() {
+		// Retexture a surface Block in the middle of a Chunk, which changes neither light nor which faces show
+		int x = 8;
+		int z = 8;
+		int y = world.getHighestBlock(x, z);
+		BlockType type = world.getBlock(x, y, z) == BlockType.Grass ? BlockType.Dirt : BlockType.Grass;
+		Chunk chunk = world.getChunk(x >> 4, y >> 4, z >> 4);
+		
+		uploader.clear();
+		world.setBlock(x, y, z, type);
+		world.update(position);
+		
+		List<Upload> uploads = uploader.getUploads();
+		assertEquals(1, uploads.size());
+		assertEquals(chunk.getVertexCount(), uploads.get(0).vertexCount);
+		assertEquals(0, uploads.get(0).byteOffset);
+		assertEquals(chunk.getVertexCount() * ChunkMesh.VERTEX_SIZE, uploads.get(0).byteCount);
+		assertEquals(1, world.getChunksMeshed());
+	}
+	
+	@Test
+	public void blockSnapshotMatchesWorld() {
+		BlockSnapshot snapshot = new BlockSnapshot();
+		snapshot.fill(world, position);
+		
+		int centerX = World.blockX(position.x);
+		int centerY = World.blockY(position.y);
+		int centerZ = World.blockZ(position.z);
+		int radius = BlockSnapshot.RADIUS;
+		
+		for (int z = centerZ - radius; z < centerZ + radius; ++z) {
+			for (int y = centerY - radius; y < centerY + radius; ++y) {
+				for (int x = centerX - radius; x < centerX + radius; ++x) {
+					assertEquals(world.isSolid(x, y, z), snapshot.isSolid(x, y, z));
+				}
+			}
+		}
+		
+		// Blocks it wasn't shown stop movement
+		assertTrue(snapshot.isSolid(centerX + radius, centerY, centerZ));
+		assertTrue(snapshot.isSolid(centerX, centerY - radius - 1, centerZ));
+	}
+	
+	// Update until every Chunk in range is loaded and meshed, and nothing more is being uploaded
+	private void settle() {
+		long deadline = System.nanoTime() + SETTLE_NANOS;
+		
+		do {
+			assertTrue("the World did not settle", System.nanoTime() < deadline);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+			
+			uploader.clear();
+			world.update(position);
+		} while (!world.isFullyLoaded() || !uploader.getUploads().isEmpty());
+	}
+}
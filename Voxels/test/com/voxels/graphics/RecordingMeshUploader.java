@@ -0,0 +1,57 @@
+package com.voxels.graphics;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Keeps meshes on the CPU like NullMeshUploader, and remembers every upload, so tests can check
+// which buffers were sent and how much of each
+public class RecordingMeshUploader implements MeshUploader {
+	// One call to upload: the buffer, the range of the mesh's vertex data it was sent, and how many vertices that holds
+	public static class Upload {
+		public final MeshBuffer buffer;
+		public final int byteOffset;
+		public final int byteCount;
+		public final int vertexCount;
+		
+		Upload(MeshBuffer buffer, int byteOffset, int byteCount, int vertexCount) {
+			this.buffer = buffer;
+			this.byteOffset = byteOffset;
+			this.byteCount = byteCount;
+			this.vertexCount = vertexCount;
+		}
+	}
+	
+	private final List<Upload> uploads = new ArrayList<>();
+	
+	public List<Upload> getUploads() {
+		return uploads;
+	}
+	
+	public void clear() {
+		uploads.clear();
+	}
+	
+	@Override
+	public MeshBuffer create() {
+		return new MeshBuffer();
+	}
+	
+	@Override
+	public void upload(MeshBuffer buffer, ChunkMesh mesh) {
+		ByteBuffer vertices = mesh.getVertices();
+		
+		uploads.add(new Upload(buffer, vertices.position(), vertices.remaining(), mesh.getVertexCount()));
+		buffer.quadCount = mesh.getQuadCount();
+	}
+	
+	@Override
+	public void draw(MeshBuffer buffer) {
+	
+	}
+	
+	@Override
+	public void delete(MeshBuffer buffer) {
+		buffer.quadCount = 0;
+	}
+}
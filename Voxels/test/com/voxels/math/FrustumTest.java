@@ -0,0 +1,73 @@
+package com.voxels.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+// The extracted planes against the projection itself
+public class FrustumTest {
+    private static final int POINTS = 100000;
+
+    @Test
+    public void planesMatchClipSpaceForRandomPoints() {
+        Mat4f projection = new Mat4f();
+        projection.setPerspective(80, 800f / 600, 1, 10000);
+        Mat4f view = new Mat4f();
+        view.rotate(30, 1, 0, 0);
+        view.rotate(70, 0, 1, 0);
+        view.translate(-15, 40, 25);
+        Mat4f matrix = new Mat4f();
+        matrix.mul(projection, view);
+
+        Frustum frustum = new Frustum();
+        frustum.set(matrix);
+
+        Random random = new Random(1);
+        float[] m = matrix.m;
+        int inside = 0;
+
+        for (int point = 0; point < POINTS; ++point) {
+            float x = random.nextFloat() * 400 - 200;
+            float y = random.nextFloat() * 400 - 200;
+            float z = random.nextFloat() * 400 - 200;
+
+            // A point is visible when each clip-space coordinate lies within -w to w
+            float clipX = m[0] * x + m[4] * y + m[8] * z + m[12];
+            float clipY = m[1] * x + m[5] * y + m[9] * z + m[13];
+            float clipZ = m[2] * x + m[6] * y + m[10] * z + m[14];
+            float clipW = m[3] * x + m[7] * y + m[11] * z + m[15];
+            float margin = Math.min(clipW - Math.abs(clipX), Math.min(clipW - Math.abs(clipY), clipW - Math.abs(clipZ)));
+
+            // Leave out points so close to a plane that rounding decides which side they're on
+            if (Math.abs(margin) < 1e-3f * Math.abs(clipW)) {
+                continue;
+            }
+
+            boolean visible = margin > 0;
+            assertEquals("point " + x + ", " + y + ", " + z, visible, frustum.containsPoint(x, y, z));
+            inside += visible ? 1 : 0;
+        }
+
+        // Make sure both sides were tested
+        assertTrue(inside > 0 && inside < POINTS);
+    }
+
+    @Test
+    public void boxesBehindTheCameraAreCulled() {
+        Mat4f matrix = new Mat4f();
+        matrix.setPerspective(80, 800f / 600, 1, 10000);
+
+        Frustum frustum = new Frustum();
+        frustum.set(matrix);
+
+        // The camera looks down -z
+        assertTrue(frustum.intersectsBox(-10, -10, -110, 10, 10, -90));
+        assertFalse(frustum.intersectsBox(-10, -10, 90, 10, 10, 110));
+        // Straddling the near plane still counts
+        assertTrue(frustum.intersectsBox(-500, -10, -60, 500, 10, 50));
+    }
+}
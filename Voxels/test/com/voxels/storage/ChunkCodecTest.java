@@ -0,0 +1,89 @@
+package com.voxels.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.voxels.Block.BlockType;
+import com.voxels.Chunk;
+import com.voxels.TestChunks;
+
+// Encoding Chunks and decoding them back, and refusing records that don't hold a whole Chunk
+public class ChunkCodecTest {
+	@Test
+	public void uniformChunkRoundTrips() throws IOException {
+		assertRoundTrips(TestChunks.uniform(BlockType.Dirt));
+	}
+	
+	@Test
+	public void checkerboardChunkRoundTrips() throws IOException {
+		assertRoundTrips(TestChunks.checkerboard());
+	}
+	
+	@Test
+	public void noisyChunkRoundTrips() throws IOException {
+		assertRoundTrips(TestChunks.noisy(42));
+	}
+	
+	@Test
+	public void truncatedRecordsAreRejected() {
+		ByteBuffer encoded = encode(TestChunks.noisy(42));
+		
+		for (int size = 0; size < encoded.limit(); ++size) {
+			ByteBuffer truncated = encoded.duplicate();
+			truncated.limit(size);
+			assertRejected(truncated);
+		}
+	}
+	
+	@Test
+	public void corruptRecordsAreRejected() {
+		// An unknown BlockType at the end, after runs that would otherwise be set
+		ByteBuffer encoded = encode(TestChunks.noisy(42));
+		encoded.put(encoded.limit() - 1, (byte)100);
+		assertRejected(encoded);
+		
+		// An unknown version
+		encoded = encode(TestChunks.uniform(BlockType.Dirt));
+		encoded.put(0, (byte)2);
+		assertRejected(encoded);
+		
+		// A run of nothing, and a run past the end of the Chunk
+		assertRejected(ByteBuffer.wrap(new byte[] { 1, 0, 1 }));
+		assertRejected(ByteBuffer.wrap(new byte[] { 1, (byte)0x81, 0x20, 1 }));
+	}
+	
+	private static ByteBuffer encode(Chunk chunk) {
+		ByteBuffer encoded = ByteBuffer.allocate(ChunkCodec.MAX_ENCODED_SIZE);
+		ChunkCodec.encode(chunk, encoded);
+		encoded.flip();
+		return encoded;
+	}
+	
+	private static void assertRoundTrips(Chunk chunk) throws IOException {
+		Chunk decoded = TestChunks.empty(0, 0, 0);
+		ChunkCodec.decode(encode(chunk), decoded);
+		
+		for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+			assertEquals(chunk.getBlock(index), decoded.getBlock(index));
+		}
+	}
+	
+	// The record must throw without setting any Blocks
+	private static void assertRejected(ByteBuffer encoded) {
+		Chunk chunk = TestChunks.empty(0, 0, 0);
+		
+		try {
+			ChunkCodec.decode(encoded, chunk);
+			fail("Decoded a bad record of " + encoded.limit() + " bytes");
+		} catch (IOException e) {
+			for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+				assertEquals(BlockType.Air, chunk.getBlock(index));
+			}
+		}
+	}
+}
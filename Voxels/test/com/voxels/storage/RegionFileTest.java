@@ -0,0 +1,110 @@
+package com.voxels.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+// Where rewritten Chunks end up in a region file, read back from its offset table
+public class RegionFileTest {
+	// Data that needs one sector, and data that needs two
+	private static final int SMALL = 100;
+	private static final int LARGE = RegionFile.SECTOR_SIZE;
+	
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	
+	private Path path;
+	private RegionFile region;
+	
+	@Before
+	public void open() throws IOException {
+		path = folder.getRoot().toPath().resolve("r.0.0.0.vxr");
+		region = new RegionFile(path);
+	}
+	
+	@After
+	public void close() throws IOException {
+		region.close();
+	}
+	
+	@Test
+	public void missingChunkReadsAsNull() throws IOException {
+		assertNull(region.read(3, 4));
+	}
+	
+	@Test
+	public void rewriteThatFitsKeepsItsSector() throws IOException {
+		region.write(0, 0, data(SMALL, 1));
+		region.write(1, 0, data(SMALL, 2));
+		region.write(0, 0, data(SMALL + 1, 3));
+		
+		assertEquals(1, sectorOf(0, 0));
+		assertEquals(2, sectorOf(1, 0));
+		assertData(0, 0, SMALL + 1, 3);
+		assertData(1, 0, SMALL, 2);
+	}
+	
+	@Test
+	public void rewriteThatGrowsMovesToAFreeGap() throws IOException {
+		region.write(0, 0, data(SMALL, 1));
+		region.write(1, 0, data(SMALL, 2));
+		region.write(2, 0, data(SMALL, 3));
+		
+		// Growing the middle Chunk leaves sector 2 free and moves it past the end
+		region.write(1, 0, data(LARGE, 4));
+		assertEquals(4, sectorOf(1, 0));
+		
+		// Growing the first Chunk fills sectors 1 and 2
+		region.write(0, 0, data(LARGE, 5));
+		assertEquals(1, sectorOf(0, 0));
+		
+		assertData(0, 0, LARGE, 5);
+		assertData(1, 0, LARGE, 4);
+		assertData(2, 0, SMALL, 3);
+	}
+	
+	@Test
+	public void chunksSurviveReopening() throws IOException {
+		region.write(5, 7, data(LARGE, 6));
+		region.close();
+		
+		region = new RegionFile(path);
+		assertData(5, 7, LARGE, 6);
+		
+		// The reopened file knows which sectors are in use
+		region.write(0, 0, data(SMALL, 7));
+		assertEquals(3, sectorOf(0, 0));
+	}
+	
+	private static ByteBuffer data(int size, int seed) {
+		ByteBuffer data = ByteBuffer.allocate(size);
+		for (int i = 0; i < size; ++i) {
+			data.put(i, (byte)(i * 31 + seed));
+		}
+		
+		return data;
+	}
+	
+	private void assertData(int localX, int localZ, int size, int seed) throws IOException {
+		assertEquals(data(size, seed), region.read(localX, localZ));
+	}
+	
+	// Read the Chunk's first sector from the offset table on disk
+	private int sectorOf(int localX, int localZ) throws IOException {
+		region.close();
+		ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(path));
+		region = new RegionFile(path);
+		
+		return header.getInt((localX + localZ * RegionFile.REGION_SIZE) * Integer.BYTES) >>> 8;
+	}
+}
@@ -0,0 +1,114 @@
+package com.voxels.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.voxels.Chunk;
+import com.voxels.TestChunks;
+
+// Saving Chunks and loading them back, before and after the writer gets to them
+public class RegionStoreTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+	
+	// Held until the test lets the writer run
+	private final CountDownLatch writing = new CountDownLatch(1);
+	private Path directory;
+	private RegionStore store;
+	
+	@Before
+	public void open() throws IOException {
+		directory = folder.getRoot().toPath();
+		
+		ExecutorService writer = Executors.newSingleThreadExecutor();
+		writer.execute(() -> {
+			try {
+				writing.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		
+		store = new RegionStore(directory, writer);
+	}
+	
+	@After
+	public void close() {
+		writing.countDown();
+		store.close();
+	}
+	
+	@Test
+	public void unsavedChunkLoadsAsFalse() {
+		assertFalse(store.load(TestChunks.empty(0, 0, 0)));
+	}
+	
+	@Test
+	public void queuedCopyLoadsBeforeItIsWritten() throws IOException {
+		Chunk saved = TestChunks.noisy(3, -1, 40, 1);
+		store.save(saved);
+		
+		Chunk loaded = TestChunks.empty(3, -1, 40);
+		assertTrue(store.load(loaded));
+		assertSameBlocks(saved, loaded);
+		assertFalse(loaded.isModified());
+		
+		// Nothing has reached the disk yet
+		assertEquals(0, Files.list(directory).count());
+	}
+	
+	@Test
+	public void writtenChunkLoadsAfterReopening() throws IOException {
+		Chunk saved = TestChunks.noisy(-33, 2, 5, 2);
+		store.save(saved);
+		writing.countDown();
+		store.close();
+		
+		store = new RegionStore(directory);
+		Chunk loaded = TestChunks.empty(-33, 2, 5);
+		assertTrue(store.load(loaded));
+		assertSameBlocks(saved, loaded);
+		assertFalse(loaded.isModified());
+	}
+	
+	@Test
+	public void corruptRegionFileLeavesTheChunkEmpty() throws IOException {
+		store.save(TestChunks.noisy(0, 0, 0, 3));
+		writing.countDown();
+		store.close();
+		
+		// Make the last run name an unknown BlockType, after runs that would otherwise be set
+		Path path = directory.resolve("r.0.0.0.vxr");
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+		int size = bytes.getInt(RegionFile.SECTOR_SIZE);
+		bytes.put(RegionFile.SECTOR_SIZE + Integer.BYTES + size - 1, (byte)100);
+		Files.write(path, bytes.array());
+		
+		store = new RegionStore(directory);
+		Chunk loaded = TestChunks.empty(0, 0, 0);
+		assertFalse(store.load(loaded));
+		assertSameBlocks(TestChunks.empty(0, 0, 0), loaded);
+		assertFalse(loaded.isModified());
+	}
+	
+	private static void assertSameBlocks(Chunk expected, Chunk actual) {
+		for (int index = 0; index < Chunk.CHUNK_VOLUME; ++index) {
+			assertEquals(expected.getBlock(index), actual.getBlock(index));
+		}
+	}
+}